@@ -1,5 +1,6 @@
 package com.ltqtest.springbootquickstart.config;
 
+import com.ltqtest.springbootquickstart.util.ImageFileUtil;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
@@ -27,9 +28,11 @@ public class WebMvcConfig implements WebMvcConfigurer {
         // 映射头像文件路径
         // 例如：访问 http://localhost:8080/avatars/123/avatar_123_uuid.jpg 会映射到 C:/uploads/avatars/123/avatar_123_uuid.jpg
         registry.addResourceHandler("/" + avatarPath + "**")
-                .addResourceLocations("file:" + uploadBasePath + avatarPath);
-         // 添加产品图片的静态资源映射
+                .addResourceLocations("file:" + uploadBasePath + avatarPath)
+                .setCacheControl(ImageFileUtil.immutableCacheControl());
+         // 添加产品图片的静态资源映射（文件名带UUID，内容不变，允许客户端长期缓存）
         registry.addResourceHandler("/productImages/**")
-                .addResourceLocations("file:" + uploadBasePath + productImgPath);
+                .addResourceLocations("file:" + uploadBasePath + productImgPath)
+                .setCacheControl(ImageFileUtil.immutableCacheControl());
     }
 }
\ No newline at end of file
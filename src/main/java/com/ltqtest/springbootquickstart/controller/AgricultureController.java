@@ -13,6 +13,11 @@ import com.ltqtest.springbootquickstart.repository.ProductRepository;
 import com.ltqtest.springbootquickstart.repository.PurchaseRepository;
 import com.ltqtest.springbootquickstart.repository.ShoppingCartRepository;
 import com.ltqtest.springbootquickstart.repository.UserRepository;
+import com.ltqtest.springbootquickstart.service.ImageThumbnailService;
+import com.ltqtest.springbootquickstart.service.InventoryService;
+import com.ltqtest.springbootquickstart.service.ProductCacheService;
+import com.ltqtest.springbootquickstart.service.ProductEngagementService;
+import com.ltqtest.springbootquickstart.util.ImageFileUtil;
 import com.ltqtest.springbootquickstart.util.PayUtil;
 
 import cn.hutool.json.JSONObject;
@@ -22,6 +27,9 @@ import jakarta.servlet.http.HttpServletRequest;
 import com.ltqtest.springbootquickstart.repository.UserAddressRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -37,6 +45,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.ParseException;
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.logging.Logger;
 
@@ -63,6 +72,18 @@ public class AgricultureController {
 
     @Autowired
     private PayUtil payUtil;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private ProductCacheService productCacheService;
+
+    @Autowired
+    private ImageThumbnailService imageThumbnailService;
+
+    @Autowired
+    private ProductEngagementService productEngagementService;
     
     // 日志记录器
     private static final Logger logger = Logger.getLogger(AgricultureController.class.getName());
@@ -214,9 +235,11 @@ public class AgricultureController {
             
             // 保存文件
             file.transferTo(new File(filePath));
+            // 后台生成列表页、详情页缩略图
+            imageThumbnailService.submit(new File(filePath).getAbsoluteFile(), ImageThumbnailService.PRODUCT_SIZES);
             
-            // 生成可访问的URL
-            String imageUrl = accessBaseUrl + userId + "/" + filename;
+            // 生成可访问的URL（与发布商品时的地址格式一致，对应productImages静态资源映射）
+            String imageUrl = accessBaseUrl + productImgPath + userId + "/" + filename;
             
             // 返回结果
             Map<String, String> responseData = new HashMap<>();
@@ -236,17 +259,17 @@ public class AgricultureController {
      * 接口路径: GET /api/products/image/{userId}/{filename}
      * @param userId 用户ID
      * @param filename 文件名
-     * @return 图片数据
+     * @return 图片数据流
      */
     @GetMapping("/products/image/{userId}/{filename}")
-    public ResponseEntity<byte[]> getProductImage(@PathVariable("userId") Integer userId, @PathVariable("filename") String filename) {
+    public ResponseEntity<Resource> getProductImage(@PathVariable("userId") Integer userId, @PathVariable("filename") String filename) {
         try {
             // 参数验证
             if (userId == null || userId <= 0) {
-                return ResponseEntity.badRequest().body(null);
+                return ResponseEntity.badRequest().build();
             }
             if (filename == null || filename.isEmpty()) {
-                return ResponseEntity.badRequest().body(null);
+                return ResponseEntity.badRequest().build();
             }
             
             // 构造文件路径
@@ -258,37 +281,11 @@ public class AgricultureController {
                 return ResponseEntity.notFound().build();
             }
             
-            // 读取文件内容
-            byte[] imageData = Files.readAllBytes(imageFile.toPath());
-            
-            // 根据文件扩展名确定Content-Type
-            String extension = StringUtils.getFilenameExtension(filename).toLowerCase();
-            MediaType mediaType;
-            switch (extension) {
-                case "jpg":
-                case "jpeg":
-                    mediaType = MediaType.IMAGE_JPEG;
-                    break;
-                case "png":
-                    mediaType = MediaType.IMAGE_PNG;
-                    break;
-                case "gif":
-                    mediaType = MediaType.IMAGE_GIF;
-                    break;
-                default:
-                    mediaType = MediaType.APPLICATION_OCTET_STREAM;
-            }
-            
-            // 设置响应头
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(mediaType);
-            headers.setContentLength(imageData.length);
-            
-            return new ResponseEntity<>(imageData, headers, HttpStatus.OK);
-        } catch (IOException e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+            // 以流的方式返回图片，支持ETag/Last-Modified缓存校验和Range请求；文件名带UUID，内容不变，可长期缓存
+            return ImageFileUtil.buildImageResponse(imageFile, MediaType.APPLICATION_OCTET_STREAM,
+                    ImageFileUtil.immutableCacheControl());
         } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
     
@@ -334,72 +331,97 @@ public class AgricultureController {
     /**
      * 获取商品列表接口(买家端)
      * 接口路径: GET /api/products/buyer
+     * 采用游标分页：翻页时传入上一页响应中的lastProductId（按销量排序时还需lastSalesVolume）
      * @param nums 请求的商品数量
+     * @param sort 排序方式 (newest/sales)
+     * @param lastProductId 上一页最后一条商品ID，为空时查询第一页
+     * @param lastSalesVolume 上一页最后一条商品的销量，按销量排序时使用
      * @return 商品列表及相关信息
      */
     @GetMapping("/products/buyer")
-    public Result<Map<String, Object>> getProducts(@RequestParam(required = false, defaultValue = "10") Integer nums) {
+    public Result<Map<String, Object>> getProducts(@RequestParam(required = false, defaultValue = "10") Integer nums,
+            @RequestParam(value = "sort", required = false, defaultValue = "newest") String sort,
+            @RequestParam(value = "lastProductId", required = false) Integer lastProductId,
+            @RequestParam(value = "lastSalesVolume", required = false) Integer lastSalesVolume) {
         try {
             // 验证参数
             if (nums == null || nums <= 0) {
                 return Result.error(400, "参数错误：nums必须为正整数");
             }
+            if (nums > 100) {
+                nums = 100;
+            }
             
-            // 查询所有商品
-            List<Product> products = productRepository.findAll();
-            
-            // 如果数据不足，返回所有可用数据
-            int actualSize = Math.min(nums, products.size());
-            List<Product> limitedProducts = new ArrayList<>();
-            if (actualSize > 0) {
-                limitedProducts = products.subList(0, actualSize);
+            // 在数据库中按上架状态过滤并按游标取一页商品
+            Pageable pageable = PageRequest.of(0, nums);
+            List<Product> limitedProducts;
+            if ("sales".equals(sort)) {
+                if (lastSalesVolume != null && lastProductId == null) {
+                    return Result.error(400, "参数错误：按销量翻页时lastProductId不能为空");
+                }
+                if (lastProductId != null && lastSalesVolume == null) {
+                    return Result.error(400, "参数错误：按销量翻页时lastSalesVolume不能为空");
+                }
+                limitedProducts = productRepository.findFeedBySales(1, lastSalesVolume, lastProductId, pageable);
+            } else {
+                limitedProducts = productRepository.findFeedByNewest(1, lastProductId, pageable);
             }
             
             // 构建响应数据
             List<Map<String, Object>> productList = new ArrayList<>();
             for (Product product : limitedProducts) {
-                if (product.getStatus() == 1) {
-                    Map<String, Object> productMap = new HashMap<>();
-                    productMap.put("productId", product.getProductId());
-                    productMap.put("productName", product.getProductName());
-                    productMap.put("price", product.getPrice());
-                    productMap.put("producer", product.getProducer());
-                    productMap.put("salesVolume", product.getSalesVolume());
-                    
-                    // 处理商品图片URL，确保格式正确
-                    String productImg = product.getProductImg();
-                    productMap.put("productImg", productImg);
-                    
-                    // 如果有图片，添加直接访问接口的URL（用于直接获取图片数据）
-                    if (productImg != null && !productImg.isEmpty()) {
-                        // 尝试从现有URL中提取用户ID和文件名，构建直接访问接口的URL
-                        try {
-                            // 解析现有URL，提取用户ID和文件名
-                            if (productImg.startsWith(accessBaseUrl)) {
-                                String relativePath = productImg.substring(accessBaseUrl.length());
-                                if (relativePath.contains("/")) {
-                                    String[] parts = relativePath.split("/");
-                                    if (parts.length >= 2) {
-                                        String userId = parts[0];
-                                        String filename = parts[1];
-                                        String directImageUrl = productImageApiUrl + userId + "/" + filename;
-                                        productMap.put("directImageUrl", directImageUrl);
-                                    }
+                Map<String, Object> productMap = new HashMap<>();
+                productMap.put("productId", product.getProductId());
+                productMap.put("productName", product.getProductName());
+                productMap.put("price", product.getPrice());
+                productMap.put("producer", product.getProducer());
+                productMap.put("salesVolume", product.getSalesVolume());
+                
+                // 处理商品图片URL，确保格式正确
+                String productImg = product.getProductImg();
+                productMap.put("productImg", productImg);
+                // 已生成的缩略图URL（list/detail），尚未生成时为空，客户端使用原图
+                productMap.put("thumbnails", imageThumbnailService.getThumbnailUrls(productImg, ImageThumbnailService.PRODUCT_SIZES));
+                
+                // 如果有图片，添加直接访问接口的URL（用于直接获取图片数据）
+                if (productImg != null && !productImg.isEmpty()) {
+                    // 尝试从现有URL中提取用户ID和文件名，构建直接访问接口的URL
+                    try {
+                        // 解析现有URL，提取用户ID和文件名
+                        if (productImg.startsWith(accessBaseUrl)) {
+                            String relativePath = productImg.substring(accessBaseUrl.length());
+                            if (relativePath.contains("/")) {
+                                // 地址形如 productImages/{userId}/{filename}，早期上传的图片没有productImages前缀
+                                String[] parts = relativePath.split("/");
+                                if (parts.length >= 2) {
+                                    String userId = parts[parts.length - 2];
+                                    String filename = parts[parts.length - 1];
+                                    String directImageUrl = productImageApiUrl + userId + "/" + filename;
+                                    productMap.put("directImageUrl", directImageUrl);
                                 }
                             }
-                        } catch (Exception e) {
-                            // 如果解析失败，忽略异常，不添加directImageUrl
                         }
-                    }
-                    
-                    productMap.put("surplus", product.getSurplus());
-                    productList.add(productMap);
+                    } catch (Exception e) {
+                        // 如果解析失败，忽略异常，不添加directImageUrl
                     }
                 }
+                
+                productMap.put("surplus", product.getSurplus());
+                // 评论数、点赞总数和最新评论时间
+                productEngagementService.get(product.getProductId()).putTo(productMap);
+                productList.add(productMap);
+            }
             
             // 构建响应数据
             Map<String, Object> responseData = new HashMap<>();
             responseData.put("products", productList);
+            // 下一页游标
+            responseData.put("hasMore", limitedProducts.size() == nums);
+            if (!limitedProducts.isEmpty()) {
+                Product last = limitedProducts.get(limitedProducts.size() - 1);
+                responseData.put("lastProductId", last.getProductId());
+                responseData.put("lastSalesVolume", last.getSalesVolume());
+            }
             
             return Result.success(200, "获取商品列表成功", responseData);
         } catch (Exception e) {
@@ -422,7 +444,7 @@ public class AgricultureController {
             }
             
             // 根据商品ID查询商品
-            Product product = productRepository.findByProductId(productId);
+            Product product = productCacheService.findByProductId(productId);
             
             if (product == null) {
                 return Result.error(404, "商品不存在");
@@ -528,6 +550,8 @@ public class AgricultureController {
                 try {
                     file.transferTo(dest.getAbsoluteFile());
                     logger.info("用户ID为" + userId + "的农产品图片文件保存成功: " + dest.getAbsolutePath());
+                    // 后台生成列表页、详情页缩略图
+                    imageThumbnailService.submit(dest.getAbsoluteFile(), ImageThumbnailService.PRODUCT_SIZES);
                 } catch (IOException e) {
                     logger.severe("用户ID为" + userId + "的农产品图片文件保存失败: " + dest.getAbsolutePath());
                     return Result.error(500, "文件保存失败：" + e.getMessage());
@@ -575,15 +599,30 @@ public class AgricultureController {
      * 获取该农户商品列表接口（农户端）
      * 接口路径: GET /api/products/farmer/getMyProducts
      * @param userId 农户用户ID
+     * @param sort 排序方式（可选）：comments（评论数）、likes（评论点赞数）、latest（最新评论时间），均为降序
+     * @param minComments 最少评论数（可选）
      * @return 该农户发布的所有商品信息数组
      */
     @GetMapping("/products/farmer/getMyProducts")
-    public Result<List<Map<String, Object>>> getFarmerProducts(@RequestParam Integer userId) {
+    public Result<List<Map<String, Object>>> getFarmerProducts(@RequestParam Integer userId,
+            @RequestParam(value = "sort", required = false) String sort,
+            @RequestParam(value = "minComments", required = false) Long minComments) {
         try {
             // 验证参数
             if (userId == null || userId <= 0) {
                 return Result.error(400, "参数错误：用户ID无效");
             }
+            Comparator<ProductEngagementService.Engagement> order = null;
+            if ("comments".equals(sort)) {
+                order = Comparator.comparingLong(ProductEngagementService.Engagement::commentCount);
+            } else if ("likes".equals(sort)) {
+                order = Comparator.comparingLong(ProductEngagementService.Engagement::likeCount);
+            } else if ("latest".equals(sort)) {
+                order = Comparator.comparing(ProductEngagementService.Engagement::latestCommentTime,
+                        Comparator.nullsFirst(Comparator.naturalOrder()));
+            } else if (sort != null && !sort.isEmpty()) {
+                return Result.error(400, "参数错误：排序方式只能为comments、likes或latest");
+            }
             
             // 检查用户角色类型是否为1（农户）
             Optional<User> userOptional = userRepository.findByUserId(userId);
@@ -600,22 +639,36 @@ public class AgricultureController {
             // 查询该农户发布的所有商品
             List<Product> products = productRepository.findByUserId(userId);
             
-            // 构建响应数据
-            List<Map<String, Object>> productList = new ArrayList<>();
+            // 按评论互动数据过滤、排序（直接读取预先聚合的数据）
+            List<Product> selected = new ArrayList<>();
             for (Product product : products) {
                 // 验证商品是否已上架
-                if (product.getStatus() == 1) {
-                    Map<String, Object> productMap = new HashMap<>();
-                    productMap.put("productId", product.getProductId());
-                    productMap.put("productName", product.getProductName());
-                    productMap.put("price", product.getPrice());
-                    productMap.put("producer", product.getProducer());
-                    productMap.put("salesVolume", product.getSalesVolume());
-                    productMap.put("productImg", product.getProductImg());
-                    productMap.put("surplus", product.getSurplus());
-                    productList.add(productMap);
+                if (product.getStatus() == 1 && (minComments == null
+                        || productEngagementService.get(product.getProductId()).commentCount() >= minComments)) {
+                    selected.add(product);
                 }
             }
+            if (order != null) {
+                Comparator<ProductEngagementService.Engagement> descending = order.reversed();
+                selected.sort((a, b) -> descending.compare(productEngagementService.get(a.getProductId()),
+                        productEngagementService.get(b.getProductId())));
+            }
+            
+            // 构建响应数据
+            List<Map<String, Object>> productList = new ArrayList<>();
+            for (Product product : selected) {
+                Map<String, Object> productMap = new HashMap<>();
+                productMap.put("productId", product.getProductId());
+                productMap.put("productName", product.getProductName());
+                productMap.put("price", product.getPrice());
+                productMap.put("producer", product.getProducer());
+                productMap.put("salesVolume", product.getSalesVolume());
+                productMap.put("productImg", product.getProductImg());
+                productMap.put("thumbnails", imageThumbnailService.getThumbnailUrls(product.getProductImg(), ImageThumbnailService.PRODUCT_SIZES));
+                productMap.put("surplus", product.getSurplus());
+                productEngagementService.get(product.getProductId()).putTo(productMap);
+                productList.add(productMap);
+            }
             
             return Result.success(200, "获取农户商品列表成功", productList);
         } catch (Exception e) {
@@ -661,7 +714,7 @@ public class AgricultureController {
             }
             
             // 验证商品是否存在
-            Product product = productRepository.findByProductId(productId);
+            Product product = productCacheService.findByProductId(productId);
             if (product == null) {
                 return Result.error(404, "商品不存在");
             }
@@ -690,8 +743,6 @@ public class AgricultureController {
             shoppingCart.setTotalPrice( amount * product.getPrice());
             // 保存到数据库
             shoppingCartRepository.save(shoppingCart);
-        
-            productRepository.save(product);
             
             // 构建响应数据
             Map<String, Object> responseData = new HashMap<>();
@@ -748,7 +799,7 @@ public class AgricultureController {
             }
             
             // 验证商品是否存在
-            Product product = productRepository.findByProductId(productId);
+            Product product = productCacheService.findByProductId(productId);
             if (product == null) {
                 return Result.error(404, "商品不存在");
             }
@@ -816,15 +867,10 @@ public class AgricultureController {
                 String tradeNo = params.get("out_trade_no");
                 Purchase purchase = purchaseRepository.findByPurchaseId(Integer.parseInt(tradeNo));
                 if (purchase != null) {
-                    //更新购买记录状态为已支付
-                    purchase.setStatus(3);
-                    purchaseRepository.save(purchase);
-                    //更新商品库存和销量
-                    Product product = productRepository.findByProductId(purchase.getProductId());
-                    if (product != null) {
-                        product.setSurplus(product.getSurplus() - purchase.getAmount());
-                        product.setSalesVolume(product.getSalesVolume() + purchase.getAmount());
-                        productRepository.save(product);
+                    //更新购买记录状态为已支付，并原子扣减商品库存和累加销量
+                    if (!inventoryService.confirmPayment(purchase)) {
+                        // 款项已收到，回调按成功处理避免重复通知；订单已标记为待退款，由人工处理
+                        return Result.success(200, "支付成功，但商品库存不足，订单已转为待退款");
                     }
                 }
                 return Result.success(200, "支付成功");
@@ -840,10 +886,16 @@ public class AgricultureController {
      * 查看已售出的商品接口（农户端）
      * 接口路径: GET /api/soldout
      * @param userId 农户ID
+     * @param status 可选的订单状态过滤
+     * @param page 页码（从1开始）
+     * @param pageSize 每页条数
      * @return 已售出商品列表
      */
     @GetMapping("/products/farmer/soldout")
-    public Result<List<Map<String, Object>>> getSoldOutProducts(@RequestParam Integer userId) {
+    public Result<List<Map<String, Object>>> getSoldOutProducts(@RequestParam Integer userId,
+            @RequestParam(value = "status", required = false) Integer status,
+            @RequestParam(value = "page", defaultValue = "1") Integer page,
+            @RequestParam(value = "page_size", defaultValue = "20") Integer pageSize) {
         try {
             // 验证参数
             if (userId == null || userId <= 0) {
@@ -856,43 +908,25 @@ public class AgricultureController {
                 return Result.error(404, "农户不存在");
             }
             
-            // 获取该农户的所有商品
-            List<Product> farmerProducts = productRepository.findByUserId(userId);
-            
-            // 构建商品ID集合
-            List<Integer> productIds = new ArrayList<>();
-            for (Product product : farmerProducts) {
-                productIds.add(product.getProductId());
-            }
+            // 连接查询该农户商品的购买记录，一次取回购买记录及对应商品
+            List<Object[]> rows = purchaseRepository.findFarmerSales(userId, status, null, buildSalesPageable(page, pageSize));
             
             // 构建响应数据列表
             List<Map<String, Object>> soldoutProducts = new ArrayList<>();
-            
-            // 如果该农户有商品，则查询这些商品的购买记录
-            if (!productIds.isEmpty()) {
-                // 查询所有购买记录
-                List<Purchase> allPurchases = purchaseRepository.findAll();
+            for (Object[] row : rows) {
+                Purchase purchase = (Purchase) row[0];
+                Product product = (Product) row[1];
+                Map<String, Object> productMap = new HashMap<>();
+                productMap.put("productId", product.getProductId());
+                productMap.put("productName", product.getProductName());
+                productMap.put("productImg", product.getProductImg());
+                productMap.put("amout", purchase.getAmount());
+                productMap.put("money", product.getPrice());
+                productMap.put("totalPrice", purchase.getTotalPrice());
+                productMap.put("sendAddress", purchase.getGetAddress());
+                productMap.put("createTime", purchase.getCreateTime());
                 
-                // 筛选出属于该农户商品的购买记录
-                for (Purchase purchase : allPurchases) {
-                    if (productIds.contains(purchase.getProductId())) {
-                        // 查找对应的商品信息
-                        Product product = productRepository.findByProductId(purchase.getProductId());
-                        if (product != null) {
-                            Map<String, Object> productMap = new HashMap<>();
-                            productMap.put("productId", product.getProductId());
-                            productMap.put("productName", product.getProductName());
-                            productMap.put("productImg", product.getProductImg());
-                            productMap.put("amout", purchase.getAmount());
-                            productMap.put("money", product.getPrice());
-                            productMap.put("totalPrice", purchase.getTotalPrice());
-                            productMap.put("sendAddress", purchase.getGetAddress());
-                            productMap.put("createTime", purchase.getCreateTime());
-                            
-                            soldoutProducts.add(productMap);
-                        }
-                    }
-                }
+                soldoutProducts.add(productMap);
             }
             
             // 直接返回商品列表数组，符合接口要求的格式
@@ -903,6 +937,20 @@ public class AgricultureController {
         }
     }
 
+    /**
+     * 构建农户销售记录查询的分页参数
+     * @param page 页码（从1开始）
+     * @param pageSize 每页条数
+     * @return 分页对象
+     */
+    private Pageable buildSalesPageable(Integer page, Integer pageSize) {
+        // 确保页码和每页条数合法
+        if (page == null || page < 1) page = 1;
+        if (pageSize == null || pageSize < 1 || pageSize > 100) pageSize = 20;
+        // 排序已在查询语句中指定（按创建时间倒序）
+        return PageRequest.of(page - 1, pageSize);
+    }
+
 
     /**
      * 展示购买记录（买家端）
@@ -925,7 +973,7 @@ public class AgricultureController {
             List<Map<String, Object>> purchaseList = new ArrayList<>();
             for (Purchase purchaseItem : purchaseItems) {
                 // 查询对应的商品信息
-                Product product = productRepository.findByProductId(purchaseItem.getProductId());
+                Product product = productCacheService.findByProductId(purchaseItem.getProductId());
                 if (product != null) {
                     Map<String, Object> purchaseMap = new HashMap<>();
                     purchaseMap.put("purchaseId", purchaseItem.getPurchaseId());
@@ -969,7 +1017,7 @@ public class AgricultureController {
             List<Map<String, Object>> cartList = new ArrayList<>();
             for (ShoppingCart cartItem : cartItems) {
                 // 查询对应的商品信息
-                Product product = productRepository.findByProductId(cartItem.getProductId());
+                Product product = productCacheService.findByProductId(cartItem.getProductId());
                 if (product != null) {
                     Map<String, Object> cartMap = new HashMap<>();
                     cartMap.put("cartId", cartItem.getCartId());
@@ -1027,7 +1075,7 @@ public class AgricultureController {
             Integer productId = cartOptional.get().getProductId();
             
             // 验证商品是否存在
-            Product product = productRepository.findByProductId(productId);
+            Product product = productCacheService.findByProductId(productId);
             if (product == null) {
                 return Result.error(404, "商品不存在");
             }
@@ -1044,37 +1092,15 @@ public class AgricultureController {
                 return Result.error(404, "用户不存在");
             }
             
-            Optional<ShoppingCart> cartItemOptional = shoppingCartRepository.findByCartId(cartId);
             // 获取购物车中的商品
-            ShoppingCart cartItem = cartItemOptional.get();
-            Integer amount = cartItem.getAmount();
+            ShoppingCart cartItem = cartOptional.get();
             
-            // 检查库存是否足够
-            if (product.getSurplus() < amount) {
-                return Result.error(400, "商品库存不足，当前库存：" + product.getSurplus());
+            // 扣减库存、保存购买记录并从购物车中删除该商品（库存不足时不生成订单）
+            Purchase purchase = inventoryService.checkoutCart(cartItem, product.getPrice());
+            if (purchase == null) {
+                return Result.error(400, "商品库存不足，当前库存：" + productRepository.findByProductId(productId).getSurplus());
             }
             
-            // 创建购买记录
-            Purchase purchase = new Purchase();
-            purchase.setProductId(productId);
-            purchase.setUserId(userId);
-            purchase.setAmount(amount);
-            purchase.setGetAddress(cartItem.getGetAddress());
-            // 计算总价
-            purchase.setTotalPrice((double) amount * product.getPrice());
-            purchase.setStatus(3);
-
-            // 保存购买记录     ````
-            purchaseRepository.save(purchase);
-            
-            // 更新商品库存
-            product.setSurplus(product.getSurplus() - amount);
-            product.setSalesVolume(product.getSalesVolume() + amount);
-            productRepository.save(product);
-            
-            // 从购物车中删除该商品
-            shoppingCartRepository.delete(cartItem);
-            
             return Result.success(200, "购买成功");
             
         } catch (Exception e) {
@@ -1133,10 +1159,14 @@ public class AgricultureController {
      * 查看自己对应的所有买家已付款，待发货的商品接口（农户端）
      * 接口路径: GET /api/products/farmer/showAllPurchase
      * @param userId 农户ID
+     * @param page 页码（从1开始）
+     * @param pageSize 每页条数
      * @return 已付款待发货商品列表
      */
     @GetMapping("/products/farmer/showAllPurchase")
-    public Result<List<Map<String, Object>>> showAllPurchase(@RequestParam Integer userId) {
+    public Result<List<Map<String, Object>>> showAllPurchase(@RequestParam Integer userId,
+            @RequestParam(value = "page", defaultValue = "1") Integer page,
+            @RequestParam(value = "page_size", defaultValue = "20") Integer pageSize) {
         try {
             // 参数验证
             if (userId == null || userId <= 0) {
@@ -1148,41 +1178,22 @@ public class AgricultureController {
                 return Result.error(404, "农户不存在");
             }
             
-            // 获取该农户的所有商品
-            List<Product> farmerProducts = productRepository.findByUserId(userId);
-            
-            // 构建商品ID集合
-            List<Integer> productIds = new ArrayList<>();
-            for (Product product : farmerProducts) {
-                // 验证商品是否已上架
-                if (product.getStatus() != 1) {
-                    continue;
-                }
-                productIds.add(product.getProductId());
-            }
+            // 查询该农户已上架商品中状态为3（已付款待发货）的购买记录
+            List<Object[]> rows = purchaseRepository.findFarmerSales(userId, 3, 1, buildSalesPageable(page, pageSize));
             
             // 构建响应数据列表
             List<Map<String, Object>> purchaseList = new ArrayList<>();
-            
-            // 如果该农户有商品，则查询这些商品的购买记录
-            if (!productIds.isEmpty()) {
-                // 查询所有购买记录
-                List<Purchase> allPurchases = purchaseRepository.findAll();
+            for (Object[] row : rows) {
+                Purchase purchase = (Purchase) row[0];
+                Map<String, Object> purchaseMap = new HashMap<>();
+                purchaseMap.put("purchaseId", purchase.getPurchaseId());
+                purchaseMap.put("productId", purchase.getProductId());
+                purchaseMap.put("amount", purchase.getAmount());
+                purchaseMap.put("totalPrice", purchase.getTotalPrice());
+                purchaseMap.put("getAddress", purchase.getGetAddress());
+                purchaseMap.put("createTime", purchase.getCreateTime());
                 
-                // 筛选出属于该农户商品且状态为3（已付款待发货）的购买记录
-                for (Purchase purchase : allPurchases) {
-                    if (productIds.contains(purchase.getProductId()) && purchase.getStatus() == 3) {
-                        Map<String, Object> purchaseMap = new HashMap<>();
-                        purchaseMap.put("purchaseId", purchase.getPurchaseId());
-                        purchaseMap.put("productId", purchase.getProductId());
-                        purchaseMap.put("amount", purchase.getAmount());
-                        purchaseMap.put("totalPrice", purchase.getTotalPrice());
-                        purchaseMap.put("getAddress", purchase.getGetAddress());
-                        purchaseMap.put("createTime", purchase.getCreateTime());
-                        
-                        purchaseList.add(purchaseMap);
-                    }
-                }
+                purchaseList.add(purchaseMap);
             }
             
             return Result.success(200, "成功", purchaseList);
@@ -1309,10 +1320,14 @@ public class AgricultureController {
      * 接口路径: GET /api/products/farmer/showOneStatusAllProduct
      * @param userId 农户ID
      * @param status 购买记录状态
+     * @param page 页码（从1开始）
+     * @param pageSize 每页条数
      * @return 指定状态的商品列表
      */
     @GetMapping("/products/farmer/showOneStatusAllProduct")
-    public Result<List<Map<String, Object>>> showOneStatusAllProduct(@RequestParam Integer userId, @RequestParam Integer status) {
+    public Result<List<Map<String, Object>>> showOneStatusAllProduct(@RequestParam Integer userId, @RequestParam Integer status,
+            @RequestParam(value = "page", defaultValue = "1") Integer page,
+            @RequestParam(value = "page_size", defaultValue = "20") Integer pageSize) {
         try {
             // 参数验证
             if (userId == null || userId <= 0) {
@@ -1328,40 +1343,21 @@ public class AgricultureController {
                 return Result.error(404, "农户不存在");
             }
             
-            // 获取该农户的所有商品
-            List<Product> farmerProducts = productRepository.findByUserId(userId);
-            
-            // 构建商品ID集合
-            List<Integer> productIds = new ArrayList<>();
-            for (Product product : farmerProducts) {
-                // 验证商品是否已上架
-                if (product.getStatus() != 1) {
-                    continue;
-                }
-                productIds.add(product.getProductId());
-            }
+            // 查询该农户已上架商品中状态符合要求的购买记录
+            List<Object[]> rows = purchaseRepository.findFarmerSales(userId, status, 1, buildSalesPageable(page, pageSize));
             
             // 构建响应数据列表
             List<Map<String, Object>> productList = new ArrayList<>();
-            
-            // 如果该农户有商品，则查询这些商品的购买记录
-            if (!productIds.isEmpty()) {
-                // 查询所有购买记录
-                List<Purchase> allPurchases = purchaseRepository.findAll();
+            for (Object[] row : rows) {
+                Purchase purchase = (Purchase) row[0];
+                Map<String, Object> productMap = new HashMap<>();
+                productMap.put("product_id", purchase.getProductId());
+                productMap.put("amount", purchase.getAmount());
+                productMap.put("totalPrice", purchase.getTotalPrice());
+                productMap.put("getAddress", purchase.getGetAddress());
+                productMap.put("createTime", purchase.getCreateTime());
                 
-                // 筛选出属于该农户商品且状态符合要求的购买记录
-                for (Purchase purchase : allPurchases) {
-                    if (productIds.contains(purchase.getProductId()) && purchase.getStatus() == status) {
-                        Map<String, Object> productMap = new HashMap<>();
-                        productMap.put("product_id", purchase.getProductId());
-                        productMap.put("amount", purchase.getAmount());
-                        productMap.put("totalPrice", purchase.getTotalPrice());
-                        productMap.put("getAddress", purchase.getGetAddress());
-                        productMap.put("createTime", purchase.getCreateTime());
-                        
-                        productList.add(productMap);
-                    }
-                }
+                productList.add(productMap);
             }
             
             return Result.success(200, "已成功商品", productList);
@@ -1470,14 +1466,10 @@ public class AgricultureController {
                 return Result.error(400, "只能对已付款待发货的订单进行取消操作");
             }
             
-            // 更新购买记录状态为6（取消状态）
-            purchase.setStatus(6);
-            purchaseRepository.save(purchase);
-            Product product = productRepository.findByProductId(purchase.getProductId());
-            // 恢复商品库存
-            product.setSurplus(product.getSurplus() + purchase.getAmount());
-            product.setSalesVolume(product.getSalesVolume() - purchase.getAmount());
-            productRepository.save(product);
+            // 更新购买记录状态为6（取消状态）并恢复商品库存
+            if (!inventoryService.cancelAndRestock(purchase, List.of(3), 6)) {
+                return Result.error(400, "只能对已付款待发货的订单进行取消操作");
+            }
             
             return Result.success(200, "已成功取消");
             
@@ -1531,14 +1523,10 @@ public class AgricultureController {
             }
             
             
-            // 更新购买记录状态为7（退货状态）
-            purchase.setStatus(7);
-            purchaseRepository.save(purchase);
-            Product product = productRepository.findByProductId(purchase.getProductId());
-            // 恢复商品库存
-            product.setSurplus(product.getSurplus() + purchase.getAmount());
-            product.setSalesVolume(product.getSalesVolume() - purchase.getAmount());
-            productRepository.save(product);
+            // 更新购买记录状态为7（退货状态）并恢复商品库存
+            if (!inventoryService.cancelAndRestock(purchase, List.of(4, 5), 7)) {
+                return Result.error(400, "只能对已发货待收货或已收货的订单进行退货操作");
+            }
             
             return Result.success(200, "已成功退货");
             
@@ -1590,28 +1578,13 @@ public class AgricultureController {
                 return Result.error(400, "只能下架已发布的农产品");
             }
             
-            // 查询该农产品的所有购买记录
-            List<Purchase> allPurchases = purchaseRepository.findAll();
-            List<Purchase> productPurchases = new ArrayList<>();
-            
-            for (Purchase purchase : allPurchases) {
-                if (purchase.getProductId().equals(productId)) {
-                    productPurchases.add(purchase);
-                }
-            }
-            
-            // 取消所有该农产品的未完成订单（将状态设置为6）
-            for (Purchase purchase : productPurchases) {
-                // 只有未完成的订单才需要取消(买家已付款的订单)
-                if (purchase.getStatus() == 3 ) {
-                    purchase.setStatus(6);
-                    purchaseRepository.save(purchase);
-                }
-            }
+            // 取消所有该农产品的未完成订单（买家已付款的订单，状态3改为6），单条语句批量更新
+            purchaseRepository.updateStatusByProductId(productId, 3, 6, LocalDateTime.now());
             
             // 将农产品状态由1改为2（下架）
             product.setStatus(2);
             productRepository.save(product);
+            productCacheService.evict(productId);
             
             return Result.success(200, "下架成功");
             
@@ -1620,6 +1593,16 @@ public class AgricultureController {
         }
     }
 
+    /**
+     * 查看商品缓存命中情况接口
+     * 接口路径: GET /api/products/cache/stats
+     * @return 缓存命中统计
+     */
+    @GetMapping("/products/cache/stats")
+    public Result<Map<String, Object>> getProductCacheStats() {
+        return Result.success(200, "成功", productCacheService.stats());
+    }
+
     /**
      * 查看已保存的地址接口
      * 接口路径: GET /api/products/buyer/getSavedAddress
@@ -3,7 +3,9 @@ package com.ltqtest.springbootquickstart.controller;
 import com.ltqtest.springbootquickstart.common.Result;
 import com.ltqtest.springbootquickstart.entity.BuyRequest;
 import com.ltqtest.springbootquickstart.repository.BuyRequestRepository;
+import com.ltqtest.springbootquickstart.service.BuyRequestSearchService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.*;
@@ -21,6 +23,13 @@ public class BuyRequestController {
     @Autowired
     private BuyRequestRepository buyRequestRepository;
     
+    @Autowired
+    private BuyRequestSearchService buyRequestSearchService;
+    
+    // 每页默认条数和上限
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    
     /**
      * 发布求购需求接口
      * 接口路径: POST /api/buyRequest/publish
@@ -52,10 +61,12 @@ public class BuyRequestController {
             buyRequest.setTitle(title);
             buyRequest.setContent(content);
             buyRequest.setContact(contact); // contact可以为null
-            buyRequest.setCreateTime(new Date());
+            // 精确到秒，与datetime列保存的值一致，搜索索引与数据库的游标排序才能对应
+            buyRequest.setCreateTime(new Date(System.currentTimeMillis() / 1000 * 1000));
             
             // 保存到数据库
             BuyRequest saved = buyRequestRepository.save(buyRequest);
+            buyRequestSearchService.index(saved);
             
             // 构建响应数据
             Map<String, Object> data = new HashMap<>();
@@ -88,12 +99,14 @@ public class BuyRequestController {
             }
             
             // 检查求购需求是否存在
-            if (!buyRequestRepository.existsById(buyRequestId)) {
+            Optional<BuyRequest> buyRequestOpt = buyRequestRepository.findById(buyRequestId);
+            if (!buyRequestOpt.isPresent()) {
                 return Result.error(404, "求购需求不存在");
             }
             
             // 删除求购需求
             buyRequestRepository.deleteById(buyRequestId);
+            buyRequestSearchService.remove(buyRequestOpt.get());
             
             return Result.success(200, "删除成功");
         } catch (Exception e) {
@@ -106,48 +119,49 @@ public class BuyRequestController {
     /**
      * 检索求购需求接口
      * 接口路径: GET /api/buyRequest/search
-     * @param keyword 搜索关键字
-     * @param sort 排序方式 (time_desc/time_asc)
+     * 有关键字时通过内存倒排索引检索并高亮命中部分，没有关键字时直接按创建时间游标分页查询
+     * @param requestBody 请求参数：keyword 搜索关键字，sort 排序方式 (time_desc/time_asc)，
+     *                    lastCreateTime/lastId 上一页返回的游标，size 每页条数
      * @return Result 包含搜索结果的响应
      */
     @GetMapping("/search")
-    public Result<List<Map<String, Object>>> searchBuyRequests(
+    public Result<Map<String, Object>> searchBuyRequests(
         @RequestBody Map<String, String> requestBody) {
         try {
-            List<BuyRequest> buyRequests;
+            boolean ascending = "time_asc".equals(requestBody.get("sort"));
+            String keyword = requestBody.get("keyword") != null ? requestBody.get("keyword").trim() : "";
+            Long lastCreateTime;
+            Integer lastId;
+            int size;
+            try {
+                lastCreateTime = isBlank(requestBody.get("lastCreateTime")) ? null : Long.valueOf(requestBody.get("lastCreateTime").trim());
+                lastId = isBlank(requestBody.get("lastId")) ? null : Integer.valueOf(requestBody.get("lastId").trim());
+                size = isBlank(requestBody.get("size")) ? DEFAULT_PAGE_SIZE : Integer.parseInt(requestBody.get("size").trim());
+            } catch (NumberFormatException e) {
+                return Result.error(400, "参数错误：分页参数格式不正确");
+            }
+            if (lastCreateTime != null && lastId == null) {
+                return Result.error(400, "参数错误：翻页时lastId不能为空");
+            }
+            size = normalizePageSize(size);
             
-            // 根据是否有关键字决定搜索方式
-            if (requestBody.containsKey("keyword") && !requestBody.get("keyword").trim().isEmpty()) {
-                String keyword = requestBody.get("keyword").trim();
-                buyRequests = buyRequestRepository.searchByKeyword(keyword);
-                // 根据排序参数进行排序
-                if ("time_asc".equals(requestBody.get("sort"))) {
-                    buyRequests.sort(Comparator.comparing(BuyRequest::getCreateTime));
-                } else {
-                    buyRequests.sort(Comparator.comparing(BuyRequest::getCreateTime).reversed());
-                }
+            List<BuyRequest> buyRequests;
+            boolean hasMore;
+            if (!keyword.isEmpty()) {
+                // 根据关键字检索
+                BuyRequestSearchService.SearchPage page = buyRequestSearchService.search(keyword, ascending, lastCreateTime, lastId, size);
+                buyRequests = page.getBuyRequests();
+                hasMore = page.isHasMore();
             } else {
-                // 没有关键字时，使用排序方法查询所有
-                if ("time_asc".equals(requestBody.get("sort"))) {
-                    buyRequests = buyRequestRepository.findAllByOrderByCreateTimeAsc();
-                } else {
-                    buyRequests = buyRequestRepository.findAllByOrderByCreateTimeDesc();
+                // 没有关键字时，按创建时间游标分页查询
+                buyRequests = findPage(ascending, lastCreateTime, lastId, size + 1);
+                hasMore = buyRequests.size() > size;
+                if (hasMore) {
+                    buyRequests = buyRequests.subList(0, size);
                 }
             }
             
-            // 构建响应数据
-            List<Map<String, Object>> dataList = new ArrayList<>();
-            for (BuyRequest buyRequest : buyRequests) {
-                Map<String, Object> data = new HashMap<>();
-                data.put("buyRequestId", buyRequest.getBuyRequestId());
-                data.put("title", buyRequest.getTitle());
-                data.put("content", buyRequest.getContent());
-                data.put("contact", buyRequest.getContact());
-                data.put("createTime", buyRequest.getCreateTime());
-                dataList.add(data);
-            }
-            
-            return Result.success(200, "搜索成功", dataList);
+            return Result.success(200, "搜索成功", buildPageData(buyRequests, hasMore, keyword));
         } catch (Exception e) {
             logger.severe("检索求购需求失败: " + e.getMessage());
             e.printStackTrace();
@@ -158,31 +172,82 @@ public class BuyRequestController {
     /**
      * 获取求购需求列表接口
      * 接口路径: GET /api/buyRequest/list
+     * @param lastCreateTime 上一页最后一条的创建时间（毫秒），为空时查询第一页
+     * @param lastId 上一页最后一条的求购ID
+     * @param size 每页条数
      * @return Result 包含求购需求列表的响应
      */
     @GetMapping("/list")
-    public Result<List<Map<String, Object>>> getBuyRequestList() {
+    public Result<Map<String, Object>> getBuyRequestList(
+            @RequestParam(value = "lastCreateTime", required = false) Long lastCreateTime,
+            @RequestParam(value = "lastId", required = false) Integer lastId,
+            @RequestParam(value = "size", defaultValue = "20") Integer size) {
         try {
-            // 查询所有求购需求，按创建时间降序排列
-            List<BuyRequest> buyRequests = buyRequestRepository.findAllByOrderByCreateTimeDesc();
+            if (lastCreateTime != null && lastId == null) {
+                return Result.error(400, "参数错误：翻页时lastId不能为空");
+            }
+            size = normalizePageSize(size);
             
-            // 构建响应数据
-            List<Map<String, Object>> dataList = new ArrayList<>();
-            for (BuyRequest buyRequest : buyRequests) {
-                Map<String, Object> data = new HashMap<>();
-                data.put("buyRequestId", buyRequest.getBuyRequestId());
-                data.put("title", buyRequest.getTitle());
-                data.put("content", buyRequest.getContent());
-                data.put("contact", buyRequest.getContact());
-                data.put("createTime", buyRequest.getCreateTime());
-                dataList.add(data);
+            // 按创建时间降序游标分页查询，多取一条判断是否还有下一页
+            List<BuyRequest> buyRequests = findPage(false, lastCreateTime, lastId, size + 1);
+            boolean hasMore = buyRequests.size() > size;
+            if (hasMore) {
+                buyRequests = buyRequests.subList(0, size);
             }
             
-            return Result.success(200, "获取求购需求列表成功", dataList);
+            return Result.success(200, "获取求购需求列表成功", buildPageData(buyRequests, hasMore, null));
         } catch (Exception e) {
             logger.severe("获取求购需求列表失败: " + e.getMessage());
             e.printStackTrace();
             return Result.error(500, "服务器内部错误，请稍后再试");
         }
     }
-}
\ No newline at end of file
+    
+    private List<BuyRequest> findPage(boolean ascending, Long lastCreateTime, Integer lastId, int limit) {
+        Date cursor = lastCreateTime != null ? new Date(lastCreateTime) : null;
+        PageRequest pageRequest = PageRequest.of(0, limit);
+        return ascending
+                ? buyRequestRepository.findPageByCreateTimeAsc(cursor, lastId, pageRequest)
+                : buyRequestRepository.findPageByCreateTimeDesc(cursor, lastId, pageRequest);
+    }
+    
+    // 构建分页响应数据，有关键字时附带高亮后的标题和内容摘要
+    private Map<String, Object> buildPageData(List<BuyRequest> buyRequests, boolean hasMore, String keyword) {
+        List<Map<String, Object>> dataList = new ArrayList<>();
+        for (BuyRequest buyRequest : buyRequests) {
+            Map<String, Object> data = new HashMap<>();
+            data.put("buyRequestId", buyRequest.getBuyRequestId());
+            data.put("title", buyRequest.getTitle());
+            data.put("content", buyRequest.getContent());
+            data.put("contact", buyRequest.getContact());
+            data.put("createTime", buyRequest.getCreateTime());
+            if (keyword != null && !keyword.isEmpty()) {
+                data.put("titleHighlight", buyRequestSearchService.highlight(buyRequest.getTitle(), keyword));
+                data.put("contentHighlight", buyRequestSearchService.snippet(buyRequest.getContent(), keyword));
+            }
+            dataList.add(data);
+        }
+        
+        Map<String, Object> responseData = new HashMap<>();
+        responseData.put("buyRequests", dataList);
+        // 下一页游标
+        responseData.put("hasMore", hasMore);
+        if (!buyRequests.isEmpty()) {
+            BuyRequest last = buyRequests.get(buyRequests.size() - 1);
+            responseData.put("lastCreateTime", last.getCreateTime() != null ? last.getCreateTime().getTime() : null);
+            responseData.put("lastId", last.getBuyRequestId());
+        }
+        return responseData;
+    }
+    
+    private static int normalizePageSize(Integer size) {
+        if (size == null || size < 1) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(size, MAX_PAGE_SIZE);
+    }
+    
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+}
@@ -1,21 +1,28 @@
 package com.ltqtest.springbootquickstart.controller;
 
 import com.ltqtest.springbootquickstart.common.Result;
-import com.ltqtest.springbootquickstart.entity.DeepseekRequest;
+import com.ltqtest.springbootquickstart.entity.AppointmentScheduleView;
 import com.ltqtest.springbootquickstart.entity.Expert;
 import com.ltqtest.springbootquickstart.entity.ExpertAppointment;
 import com.ltqtest.springbootquickstart.entity.ExpertUserChatRecord;
+import com.ltqtest.springbootquickstart.entity.PendingAppointmentView;
 import com.ltqtest.springbootquickstart.entity.User;
 import com.ltqtest.springbootquickstart.repository.ExpertRepository;
 import com.ltqtest.springbootquickstart.repository.ExpertUserChatRecordRepository;
 import com.ltqtest.springbootquickstart.repository.ExpertAppointmentRepository;
 import com.ltqtest.springbootquickstart.repository.UserRepository;
-import com.mashape.unirest.http.HttpResponse;
-import com.mashape.unirest.http.Unirest;
+import com.ltqtest.springbootquickstart.service.AiAnswerCacheService;
+import com.ltqtest.springbootquickstart.service.AiGatewayService;
+import com.ltqtest.springbootquickstart.service.ChatPushService;
+import com.ltqtest.springbootquickstart.service.ChatRecordEvent;
+import com.ltqtest.springbootquickstart.service.ExpertAppointmentSlotService;
 
 import cn.hutool.log.Log;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -28,14 +35,17 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.JsonNode;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
-import com.google.gson.Gson;
 
 
 @RestController
@@ -54,7 +64,38 @@ public class ExpertController {
     @Autowired
     private ExpertUserChatRecordRepository expertUserChatRecordRepository;
 
-    private final Gson gson = new Gson();
+    @Autowired
+    private AiGatewayService aiGatewayService;
+
+    @Autowired
+    private AiAnswerCacheService aiAnswerCacheService;
+
+    @Autowired
+    private ExpertAppointmentSlotService expertAppointmentSlotService;
+
+    @Autowired
+    private ChatPushService chatPushService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // 流式问答连接的最长保持时间
+    @Value("${deepseek.stream-timeout-ms:300000}")
+    private long aiStreamTimeoutMs;
+
+    // 专家每天可预约的时间范围
+    @Value("${expert.appointment.work-start:09:00}")
+    private String appointmentWorkStart;
+
+    @Value("${expert.appointment.work-end:18:00}")
+    private String appointmentWorkEnd;
+
+    // 可预约时段单次查询的最大天数
+    private static final int MAX_AVAILABILITY_DAYS = 31;
+
+    // 聊天记录默认和最大每次返回条数
+    private static final int DEFAULT_CHAT_PAGE_SIZE = 50;
+    private static final int MAX_CHAT_PAGE_SIZE = 200;
 
     /**
      * 获取所有专家接口
@@ -175,23 +216,8 @@ public class ExpertController {
             } catch (Exception e) {
                 return Result.error(400, "参数错误：时间格式不正确，请使用HH:mm格式");
             }
-            // 检查是否存在时间冲突的预约
-            // 查找相同专家、相同日期，并且时间范围有重叠的预约记录
-            List<ExpertAppointment> existingAppointments = expertAppointmentRepository.findByExpertIdAndDate(expertId, date);
-            boolean hasConflict = false;
-            
-            for (ExpertAppointment existing : existingAppointments) {
-                // 检查是否存在时间重叠：新预约不是完全在现有预约之前，也不是完全在现有预约之后
-                boolean isCompletelyBefore = endTime.isBefore(existing.getStartTime()) || endTime.equals(existing.getStartTime());
-                boolean isCompletelyAfter = startTime.isAfter(existing.getEndTime()) || startTime.equals(existing.getEndTime());
-                
-                if (isCompletelyBefore||isCompletelyAfter) {
-                    hasConflict = true;
-                    break;
-                }
-            }
-            
-            if (hasConflict) {
+            // 检查是否与该专家当天有效预约（待处理、已同意）的时间重叠，先用缓存的占用时段快速拒绝
+            if (expertAppointmentSlotService.hasConflict(expertId, date, startTime, endTime)) {
                 return Result.error(409, "该专家在该时间段已被预约，请选择其他时间");
             }
             
@@ -205,8 +231,13 @@ public class ExpertController {
             appointment.setTopic(topic);
             appointment.setRemark(remark);
             
-            // 保存到数据库
-            ExpertAppointment savedAppointment = expertAppointmentRepository.save(appointment);
+            // 锁定专家后再次检查冲突并保存
+            ExpertAppointment savedAppointment;
+            try {
+                savedAppointment = expertAppointmentSlotService.book(appointment);
+            } catch (ExpertAppointmentSlotService.SlotConflictException e) {
+                return Result.error(409, e.getMessage());
+            }
             
             // 构建响应数据
             Map<String, Object> responseData = new HashMap<>();
@@ -346,6 +377,79 @@ public class ExpertController {
         }
     }
     
+    /**
+     * 专家可预约时段接口
+     * 接口路径: GET /api/expert-appointment/availability
+     * 返回专家在日期范围内每天工作时间内的空闲时段（已扣除待处理和已同意的预约），
+     * 客户端据此选择时段后再提交预约，避免反复试探创建接口
+     */
+    @GetMapping("/expert-appointment/availability")
+    public Result<List<Map<String, Object>>> getExpertAvailability(
+            @RequestParam(required = false) Integer expertId,
+            @RequestParam(required = false) String startDate,
+            @RequestParam(required = false) String endDate) {
+        try {
+            if (expertId == null || expertId <= 0) {
+                return Result.error(400, "参数错误：专家ID无效");
+            }
+            if (startDate == null || startDate.trim().isEmpty()) {
+                return Result.error(400, "参数错误：开始日期不能为空");
+            }
+            LocalDate fromDate;
+            LocalDate toDate;
+            try {
+                fromDate = LocalDate.parse(startDate.trim());
+                toDate = endDate == null || endDate.trim().isEmpty() ? fromDate : LocalDate.parse(endDate.trim());
+            } catch (Exception e) {
+                return Result.error(400, "参数错误：日期格式不正确，请使用YYYY-MM-DD格式");
+            }
+            if (toDate.isBefore(fromDate)) {
+                return Result.error(400, "参数错误：结束日期不能早于开始日期");
+            }
+            if (fromDate.plusDays(MAX_AVAILABILITY_DAYS - 1).isBefore(toDate)) {
+                return Result.error(400, "参数错误：查询范围不能超过" + MAX_AVAILABILITY_DAYS + "天");
+            }
+            if (!expertRepository.existsById(expertId)) {
+                return Result.error(404, "专家不存在");
+            }
+
+            // 过去的日期没有可预约时段
+            LocalDate today = LocalDate.now();
+            List<Map<String, Object>> availability = new ArrayList<>();
+            if (toDate.isBefore(today)) {
+                return Result.success(200, "获取可预约时段成功", availability);
+            }
+            if (fromDate.isBefore(today)) {
+                fromDate = today;
+            }
+
+            LocalTime workStart = LocalTime.parse(appointmentWorkStart);
+            LocalTime workEnd = LocalTime.parse(appointmentWorkEnd);
+            LocalTime now = LocalTime.now().withSecond(0).withNano(0);
+            Map<LocalDate, ExpertAppointmentSlotService.DaySlots> daySlotsMap =
+                    expertAppointmentSlotService.getDaySlots(expertId, fromDate, toDate);
+            for (Map.Entry<LocalDate, ExpertAppointmentSlotService.DaySlots> entry : daySlotsMap.entrySet()) {
+                // 当天只返回当前时间之后的时段
+                LocalTime from = entry.getKey().isEqual(today) && now.isAfter(workStart) ? now : workStart;
+                List<Map<String, Object>> freeSlots = new ArrayList<>();
+                for (LocalTime[] interval : entry.getValue().freeIntervals(from, workEnd)) {
+                    Map<String, Object> slot = new HashMap<>();
+                    slot.put("startTime", interval[0].toString());
+                    slot.put("endTime", interval[1].toString());
+                    freeSlots.add(slot);
+                }
+                Map<String, Object> dayMap = new HashMap<>();
+                dayMap.put("date", entry.getKey().toString());
+                dayMap.put("freeSlots", freeSlots);
+                availability.add(dayMap);
+            }
+
+            return Result.success(200, "获取可预约时段成功", availability);
+        } catch (Exception e) {
+            return Result.error(500, "服务器内部错误：" + e.getMessage());
+        }
+    }
+    
     /**
      * 用户取消预约接口
      * 接口路径: POST /api/expert-appointment/cancel
@@ -386,6 +490,7 @@ public class ExpertController {
             // 更新预约状态为取消
             appointment.setStatus("cancelled");
             expertAppointmentRepository.save(appointment);
+            expertAppointmentSlotService.evict(appointment.getExpertId(), appointment.getDate());
             
             return Result.success(200, "预约已取消", null);
         } catch (RuntimeException e) {
@@ -406,7 +511,7 @@ public class ExpertController {
      * 接口路径: GET /api/expert-appointment/pending
      */
     @GetMapping("/expert-appointment/pending")
-    public Result<List<Map<String, Object>>> getPendingAppointments(
+    public Result<List<PendingAppointmentView>> getPendingAppointments(
             @RequestParam(required = false) Integer userId,
             @RequestParam(defaultValue = "1") Integer page,
             @RequestParam(defaultValue = "10") Integer size) {
@@ -441,44 +546,10 @@ public class ExpertController {
             org.springframework.data.domain.PageRequest pageRequest = 
                     org.springframework.data.domain.PageRequest.of(page - 1, size);
             
-            // 查询待审核的预约记录
-            org.springframework.data.domain.Page<ExpertAppointment> appointmentPage = 
-                    expertAppointmentRepository.findByExpertIdAndStatus(expertId, "pending", pageRequest);
-            
-            // 转换数据格式
-            List<Map<String, Object>> appointmentList = new ArrayList<>();
-            for (ExpertAppointment appointment : appointmentPage.getContent()) {
-                Map<String, Object> appointmentMap = new HashMap<>();
-                
-                // 添加预约基本信息
-                appointmentMap.put("id", appointment.getAppointmentId());
-                appointmentMap.put("date", appointment.getDate().toString());
-                appointmentMap.put("startTime", appointment.getStartTime().toString());
-                appointmentMap.put("endTime", appointment.getEndTime().toString());
-                appointmentMap.put("topic", appointment.getTopic());
-                appointmentMap.put("remark", appointment.getRemark());
-                appointmentMap.put("status", appointment.getStatus());
-                
-                // 添加用户信息
-                // 通过用户ID查询用户信息
-                User user = userRepository.findByUserId(appointment.getUserId()).orElse(null);  
-                if (user != null) {
-                    Map<String, Object> userMap = new HashMap<>();
-                    userMap.put("id", user.getUserId());
-                    userMap.put("name", user.getRealName() != null ? user.getRealName() : user.getUsername());
-                    userMap.put("avatar", user.getImageUrl() != null ? user.getImageUrl() : "https://example.com/u1.jpg");
-                    appointmentMap.put("user", userMap);
-                } else {
-                    // 如果用户不存在，仍然返回基本信息，但用户名为空
-                    Map<String, Object> userMap = new HashMap<>();
-                    userMap.put("id", appointment.getUserId());
-                    userMap.put("name", "未知用户");
-                    userMap.put("avatar", "https://example.com/u1.jpg");
-                    appointmentMap.put("user", userMap);
-                }
-                
-                appointmentList.add(appointmentMap);
-            }
+            // 查询待审核的预约记录，用户信息随预约一起查询
+            org.springframework.data.domain.Page<PendingAppointmentView> appointmentPage = 
+                    expertAppointmentRepository.findPendingViews(expertId, "pending", pageRequest);
+            List<PendingAppointmentView> appointmentList = appointmentPage.getContent();
             
             // 直接返回数据数组，符合接口规范
             return Result.success(200, "获取待审核预约列表成功", appointmentList);
@@ -601,6 +672,7 @@ public class ExpertController {
             
             // 保存更新
             expertAppointmentRepository.save(appointment);
+            expertAppointmentSlotService.evict(appointment.getExpertId(), appointment.getDate());
             
             // 构建响应数据
             Map<String, Object> responseData = new HashMap<>();
@@ -696,6 +768,7 @@ public class ExpertController {
             
             // 保存更新
             expertAppointmentRepository.save(appointment);
+            expertAppointmentSlotService.evict(appointment.getExpertId(), appointment.getDate());
             
             return Result.success(200, "状态已更新为 " + status, null);
             
@@ -714,7 +787,7 @@ public class ExpertController {
      * 接口路径: GET /api/expert-appointment/schedule
      */
     @GetMapping("/expert-appointment/schedule")
-    public Result<List<Map<String, Object>>> getAppointmentSchedule(
+    public Result<List<AppointmentScheduleView>> getAppointmentSchedule(
              Integer userId,
             @RequestParam(required = false) String date) {
         try {
@@ -723,57 +796,29 @@ public class ExpertController {
                 return Result.error(400, "参数错误：用户ID无效");
             }
             
-            Integer expertId=userRepository.findByUserId(userId).orElse(null).getExpertId();
             // 验证用户是否存在
-            if (userRepository.findByUserId(userId).orElse(null)==null) {
+            User user = userRepository.findByUserId(userId).orElse(null);
+            if (user == null) {
                 return Result.error(404, "用户不存在");
             }
+            Integer expertId = user.getExpertId();
             if(expertId==null||expertId<=0){
                 return Result.error(404, "用户不是专家");
             }
             
-            // 查询预约记录
-            List<ExpertAppointment> appointments;
+            // 查询预约记录，用户姓名随预约一起查询
+            LocalDate targetDate = null;
             if (date != null && !date.trim().isEmpty()) {
                 // 验证日期格式
-                LocalDate targetDate;
                 try {
                     targetDate = LocalDate.parse(date);
                 } catch (Exception e) {
                     return Result.error(400, "参数错误：日期格式不正确，请使用YYYY-MM-DD格式");
                 }
-                // 根据专家ID、日期和状态筛选
-                appointments = expertAppointmentRepository.findByExpertIdAndDateAndStatusIn(
-                        expertId, targetDate, Arrays.asList("approved", "completed", "no_show"));
-            } else {
-                // 只根据专家ID和状态筛选
-                appointments = expertAppointmentRepository.findByExpertIdAndStatusIn(
-                        expertId, Arrays.asList("approved", "completed", "no_show"));
-            }
-            
-            // 转换数据格式
-            List<Map<String, Object>> appointmentList = new ArrayList<>();
-            for (ExpertAppointment appointment : appointments) {
-                Map<String, Object> appointmentMap = new HashMap<>();
-                
-                // 添加预约基本信息
-                appointmentMap.put("id", appointment.getAppointmentId());
-                appointmentMap.put("date", appointment.getDate().toString());
-                appointmentMap.put("startTime", appointment.getStartTime().toString());
-                appointmentMap.put("endTime", appointment.getEndTime().toString());
-                appointmentMap.put("topic", appointment.getTopic());
-                appointmentMap.put("status", appointment.getStatus());
-                
-                // 添加用户信息（用户名）
-                User user = userRepository.findByUserId(Integer.valueOf(appointment.getUserId())).orElse(null);
-                String userName = "未知用户";
-                if (user != null) {
-                    userName = user.getRealName() != null ? user.getRealName() : user.getUsername();
-                }
-                appointmentMap.put("userName", userName);
-                
-                appointmentList.add(appointmentMap);
             }
+            // 根据专家ID、状态筛选，指定日期时再按日期筛选
+            List<AppointmentScheduleView> appointmentList = expertAppointmentRepository.findScheduleViews(
+                    expertId, targetDate, Arrays.asList("approved", "completed", "no_show"));
             
             // 构建响应数据
             return Result.success(200, "获取预约日程成功", appointmentList);
@@ -783,89 +828,141 @@ public class ExpertController {
     }
 
     /**
-     * deepseek api: sk-e097c59ee6914985a2283ed2212b9ead
      * AI问答接口
-     * 接口路径: POST /api/expert/ask
+     * 接口路径: POST /api/expert/ask/ai
+     * 异步调用AI网关，等待回答期间不占用Tomcat工作线程
      */
     @PostMapping("/expert/ask/ai")
-    public Result<Object> askExpert(@RequestBody Map<String, Object> request) {
-        try {
-            // 参数校验
-            if (request == null) {
-                return Result.error(400, "请求参数不能为空");
-            }
-            // if (!request.containsKey("expertId") || request.get("expertId") == null) {
-            //     return Result.error(400, "参数错误：专家ID不能为空");
-            // }
-            if (!request.containsKey("question") || request.get("question") == null) {
-                return Result.error(400, "参数错误：问题不能为空");
-            }
-            if (!request.containsKey("userId") || request.get("userId") == null) {
-                return Result.error(400, "参数错误：用户ID不能为空");
-            }
+    public CompletableFuture<Result<Object>> askExpert(@RequestBody Map<String, Object> request) {
+        Result<Object> invalid = checkAskRequest(request);
+        if (invalid != null) {
+            return CompletableFuture.completedFuture(invalid);
+        }
+        String question = request.get("question").toString();
+        Integer userId = Integer.parseInt(request.get("userId").toString());
 
-            // 解析参数
-            // Integer expertId;
-            Integer userId;
-            // try {
-            //     expertId = Integer.parseInt(request.get("expertId").toString());
-            // } catch (NumberFormatException e) {
-            //     return Result.error(400, "参数错误：专家ID格式不正确");
-            // }
-            try {
-                userId = Integer.parseInt(request.get("userId").toString());
-            } catch (NumberFormatException e) {
-                return Result.error(400, "参数错误：用户ID格式不正确");
-            }
+        // 相同或相似的问题直接返回缓存的回答
+        String cachedAnswer = aiAnswerCacheService.lookup(question);
+        if (cachedAnswer != null) {
+            Map<String, Object> responseData = new HashMap<>();
+            responseData.put("answer", aiGatewayService.wrapAnswer(cachedAnswer));
+            responseData.put("cached", true);
+            return CompletableFuture.completedFuture(Result.success(200, "AI回答成功", responseData));
+        }
 
-            String question = request.get("question").toString();
+        return aiGatewayService.ask(question)
+                .thenApply(answer -> {
+                    aiAnswerCacheService.put(question, aiGatewayService.extractAnswer(answer), userId);
+                    // 构建响应数据
+                    Map<String, Object> responseData = new HashMap<>();
+                    responseData.put("answer", answer);
+                    responseData.put("cached", false);
+                    return Result.<Object>success(200, "AI回答成功", responseData);
+                })
+                .exceptionally(this::aiErrorResult);
+    }
 
-            // 验证专家是否存在
-            // Expert expert = expertRepository.findByExpertId(expertId).orElse(null);
-            // if (expert == null) {
-            //     return Result.error(404, "专家不存在");
-            // }
-            User user = userRepository.findByUserId(userId).orElse(null);
-            if (user == null) {
-                return Result.error(404, "用户不存在");
+    /**
+     * AI问答流式接口（Server-Sent Events）
+     * 接口路径: POST /api/expert/ask/ai/stream
+     * 事件：token（增量内容）、done（完整回答）、error（错误信息）
+     */
+    @PostMapping(value = "/expert/ask/ai/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter askExpertStream(@RequestBody Map<String, Object> request) {
+        SseEmitter emitter = new SseEmitter(aiStreamTimeoutMs);
+        try {
+            Result<Object> invalid = checkAskRequest(request);
+            if (invalid != null) {
+                emitter.send(SseEmitter.event().name("error").data(invalid.getMessage()));
+                emitter.complete();
+                return emitter;
             }
+            String question = request.get("question").toString();
+            Integer userId = Integer.parseInt(request.get("userId").toString());
+            String cachedAnswer = aiAnswerCacheService.lookup(question);
+            if (cachedAnswer != null) {
+                emitter.send(SseEmitter.event().name("token").data(cachedAnswer));
+                emitter.send(SseEmitter.event().name("done").data(cachedAnswer));
+                emitter.complete();
+                return emitter;
+            }
+            aiGatewayService.stream(question, emitter, answer -> aiAnswerCacheService.put(question, answer, userId));
+        } catch (AiGatewayService.BusyException | AiGatewayService.DisabledException e) {
+            sendStreamError(emitter, e.getMessage());
+        } catch (Exception e) {
+            sendStreamError(emitter, "服务器内部错误：" + e.getMessage());
+        }
+        return emitter;
+    }
 
-            List <DeepseekRequest.Message> messages = new ArrayList<>();
+    /**
+     * AI回答缓存命中统计接口
+     * 接口路径: GET /api/expert/ask/ai/cache/stats
+     */
+    @GetMapping("/expert/ask/ai/cache/stats")
+    public Result<Map<String, Object>> getAiAnswerCacheStats() {
+        return Result.success(200, "获取缓存统计成功", aiAnswerCacheService.stats());
+    }
 
-            // 添加系统角色提示，设定专家身份
-            messages.add(DeepseekRequest.Message.builder().role("system").content("你是一个农业专家").build());
+    // 校验AI问答参数，校验通过返回null
+    private Result<Object> checkAskRequest(Map<String, Object> request) {
+        // 参数校验
+        if (request == null) {
+            return Result.error(400, "请求参数不能为空");
+        }
+        if (!request.containsKey("question") || request.get("question") == null) {
+            return Result.error(400, "参数错误：问题不能为空");
+        }
+        if (!request.containsKey("userId") || request.get("userId") == null) {
+            return Result.error(400, "参数错误：用户ID不能为空");
+        }
 
-            // 添加用户问题
-            messages.add(DeepseekRequest.Message.builder().role("user").content(question).build());
+        // 解析参数
+        Integer userId;
+        try {
+            userId = Integer.parseInt(request.get("userId").toString());
+        } catch (NumberFormatException e) {
+            return Result.error(400, "参数错误：用户ID格式不正确");
+        }
 
-            DeepseekRequest requestBody = DeepseekRequest.builder()
-                    .model("deepseek-chat")
-                    .messages(messages)
-                    .build();
-            
-            // 调用DeepSeek API获取回答
-            String apiUrl = "https://api.deepseek.com/v1/chat/completions";
-            String apiKey = "sk-e097c59ee6914985a2283ed2212b9ead"; // API密钥
-            HttpResponse<String> response = Unirest.post(apiUrl)
-                .header("Content-Type", "application/json")
-                .header("Accept", "application/json")
-                .header("Authorization", "Bearer "+ apiKey)
-                .body(gson.toJson(requestBody))
-                .asString();
-            
-            // 构建响应数据
-            Map<String, Object> responseData = new HashMap<>();
-            responseData.put("answer", response.getBody());
-            
-            return Result.success(200, "AI回答成功", responseData);
-        } catch (Exception e) {
-            return Result.error(500, "服务器内部错误：" + e.getMessage());
+        if (!userRepository.findByUserId(userId).isPresent()) {
+            return Result.error(404, "用户不存在");
+        }
+        return null;
+    }
+
+    // AI调用异常转换为响应
+    private Result<Object> aiErrorResult(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof AiGatewayService.BusyException) {
+            return Result.error(429, cause.getMessage());
+        }
+        if (cause instanceof AiGatewayService.DisabledException) {
+            return Result.error(503, cause.getMessage());
+        }
+        if (cause instanceof java.io.InterruptedIOException) {
+            return Result.error(504, "AI服务响应超时，请稍后再试");
+        }
+        return Result.error(500, "服务器内部错误：" + cause.getMessage());
+    }
+
+    private void sendStreamError(SseEmitter emitter, String message) {
+        try {
+            emitter.send(SseEmitter.event().name("error").data(message));
+            emitter.complete();
+        } catch (Exception ex) {
+            emitter.completeWithError(ex);
         }
     }
 
     /**
      * 获取专家与用户聊天记录接口
      * 接口路径: GET /api/expert/chat-records
+     * 请求参数: expertId、userId，可选 size(条数，默认50，最大200)，以及以下模式之一：
+     *   不带游标：返回最近size条记录
+     *   beforeId：返回该记录之前的size条记录（向前翻页）
+     *   afterId/since：增量同步，返回ID大于afterId的新记录和since（上次同步时间）之后被回答的记录
+     * 返回的记录均按euc_id升序排列
      */
     @GetMapping("/expert/chat-records")
     public Result<List<Map<String, Object>>> getExpertUserChatRecords(@RequestBody Map<String, Object> request) {
@@ -894,6 +991,34 @@ public class ExpertController {
                 return Result.error(400, "参数错误：用户ID格式不正确");
             }
 
+            Long beforeId = null;
+            Long afterId = null;
+            LocalDateTime since = null;
+            int size = DEFAULT_CHAT_PAGE_SIZE;
+            try {
+                if (request.get("beforeId") != null) {
+                    beforeId = Long.parseLong(request.get("beforeId").toString());
+                }
+                if (request.get("afterId") != null) {
+                    afterId = Long.parseLong(request.get("afterId").toString());
+                }
+                if (request.get("size") != null) {
+                    size = Integer.parseInt(request.get("size").toString());
+                }
+            } catch (NumberFormatException e) {
+                return Result.error(400, "参数错误：游标或条数格式不正确");
+            }
+            if (size < 1 || size > MAX_CHAT_PAGE_SIZE) {
+                return Result.error(400, "参数错误：条数应在1到" + MAX_CHAT_PAGE_SIZE + "之间");
+            }
+            if (request.get("since") != null) {
+                try {
+                    since = LocalDateTime.parse(request.get("since").toString());
+                } catch (Exception e) {
+                    return Result.error(400, "参数错误：since格式不正确，请使用返回记录中的time格式");
+                }
+            }
+
             Expert expert = expertRepository.findByExpertId(expertId).orElse(null);
             if (expert == null) {
                 return Result.error(404, "专家不存在");
@@ -903,25 +1028,28 @@ public class ExpertController {
                 return Result.error(404, "用户不存在");
             }
 
-            // System.out.println("开始查询聊天记录");
-            // System.out.println("专家ID: " + expertId + ", 用户ID: " + userId);
-
             // 查询聊天记录
-            List<ExpertUserChatRecord> chatRecords = expertUserChatRecordRepository.findByExpertIdAndUserId(expertId, userId);
+            PageRequest pageRequest = PageRequest.of(0, size);
+            List<ExpertUserChatRecord> chatRecords;
+            if (afterId != null || since != null) {
+                chatRecords = expertUserChatRecordRepository.findChanges(
+                        expertId, userId, afterId != null ? afterId : Long.MAX_VALUE, since, pageRequest);
+            } else {
+                if (beforeId != null) {
+                    chatRecords = new ArrayList<>(expertUserChatRecordRepository
+                            .findByExpertIdAndUserIdAndEuChatIdLessThanOrderByEuChatIdDesc(expertId, userId, beforeId, pageRequest));
+                } else {
+                    chatRecords = new ArrayList<>(expertUserChatRecordRepository
+                            .findByExpertIdAndUserIdOrderByEuChatIdDesc(expertId, userId, pageRequest));
+                }
+                // 倒序查出最近的记录后转为升序
+                Collections.reverse(chatRecords);
+            }
 
-            System.out.println("查询到聊天记录数量: " + chatRecords.size());
-            System.out.println("聊天记录内容: " + chatRecords);
             // 转换数据格式
             List<Map<String, Object>> recordList = new ArrayList<>();
             for (ExpertUserChatRecord record : chatRecords) {
-                Map<String, Object> recordMap = new HashMap<>();
-                recordMap.put("euc_id", record.getEuChatId());
-                recordMap.put("expertId", record.getExpertId());
-                recordMap.put("userId", record.getUserId());
-                recordMap.put("question", record.getQuestion());
-                recordMap.put("answer", record.getAnswer());
-                recordMap.put("time", record.getSendTime().toString());
-                recordList.add(recordMap);
+                recordList.add(ChatPushService.toRecordMap(record));
             }
             
             return Result.success(200, "获取聊天记录成功", recordList);
@@ -930,6 +1058,43 @@ public class ExpertController {
         }
     }
 
+    /**
+     * 聊天记录实时推送接口
+     * 接口路径: GET /api/expert/chat-records/stream?expertId=&userId=
+     * SSE连接，会话有新提问或专家回答时推送chat事件（数据格式与聊天记录接口相同，事件ID为euc_id），
+     * 断线重连后可通过聊天记录接口的afterId/since补齐断线期间的记录
+     */
+    @GetMapping(value = "/expert/chat-records/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamExpertUserChatRecords(@RequestParam(required = false) Integer expertId,
+                                                  @RequestParam(required = false) Integer userId) {
+        if (expertId == null || expertId <= 0 || userId == null || userId <= 0) {
+            SseEmitter emitter = new SseEmitter();
+            sendStreamError(emitter, "参数错误：专家ID和用户ID不能为空");
+            return emitter;
+        }
+        if (!expertRepository.existsById(expertId) || !userRepository.findByUserId(userId).isPresent()) {
+            SseEmitter emitter = new SseEmitter();
+            sendStreamError(emitter, "专家或用户不存在");
+            return emitter;
+        }
+        try {
+            return chatPushService.subscribe(expertId, userId);
+        } catch (IllegalStateException e) {
+            SseEmitter emitter = new SseEmitter();
+            sendStreamError(emitter, e.getMessage());
+            return emitter;
+        }
+    }
+
+    /**
+     * 聊天记录推送统计接口
+     * 接口路径: GET /api/expert/chat-records/stream/stats
+     */
+    @GetMapping("/expert/chat-records/stream/stats")
+    public Result<Map<String, Object>> getChatPushStats() {
+        return Result.success(200, "成功", chatPushService.stats());
+    }
+
     /**
      * 专家回答用户接口
      * 接口路径: POST /api/expert/answer
@@ -963,6 +1128,8 @@ public class ExpertController {
             chatRecord.setAnswer(answer);
             chatRecord.setSendTime(LocalDateTime.now());
             expertUserChatRecordRepository.save(chatRecord);
+            // 推送给正在查看该会话的用户
+            eventPublisher.publishEvent(new ChatRecordEvent(chatRecord));
 
             return Result.success(200, "回答成功");
         } catch (Exception e) {
@@ -3,18 +3,17 @@ package com.ltqtest.springbootquickstart.controller;
 import com.ltqtest.springbootquickstart.common.Result;
 import com.ltqtest.springbootquickstart.entity.*;
 import com.ltqtest.springbootquickstart.repository.*;
+import com.ltqtest.springbootquickstart.service.ReferenceDataCacheService;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Sort;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -22,66 +21,35 @@ import java.util.Optional;
 @RequestMapping("/api")
 public class HomeController {
     @Autowired
-    private NewsRepository newsRepository;
+    private FinancialProductRepository financialProductRepository;
 
     @Autowired
-    private FinancialProductRepository financialProductRepository;
+    private ReferenceDataCacheService referenceDataCacheService;
     
     /**
      * 新闻轮播展示接口
+     * 响应由参考数据缓存预先序列化，支持ETag/If-None-Match返回304
      */
     @GetMapping("/news")
-    public Result<Map<String, Object>> getNewsList() {
+    public ResponseEntity<?> getNewsList() {
         try {
-            // 获取所有新闻，按newsId排序
-            List<News> newsList = newsRepository.findAll(Sort.by(Sort.Direction.ASC, "newsId"));
-            
-            Map<String, Object> responseData = new HashMap<>();
-            responseData.put("newsList", newsList);
-            
-            return Result.success(responseData);
+            return referenceDataCacheService.getNewsPayload().toResponseEntity();
         } catch (Exception e) {
-            return Result.error(500, "服务器内部错误");
+            return ResponseEntity.ok(Result.error(500, "服务器内部错误"));
         }
     }
     /**
      * 金融产品展示接口
+     * 响应由参考数据缓存预先序列化，支持ETag/If-None-Match返回304
      */
     @GetMapping("/financing/products/")
-  public Result<Map<String, Object>> getFinancialProducts() {
-    try {
-        List<FinancialProduct> products = financialProductRepository.findAll();
-        
-        // 准备响应数据
-        Map<String, Object> responseData = new HashMap<>();
-        
-        // 转换标签格式为数组
-        List<Map<String, Object>> productList = new ArrayList<>();
-        for (FinancialProduct product : products) {
-            Map<String, Object> productMap = new HashMap<>();
-            productMap.put("fpId", product.getFpId());
-            productMap.put("fpName", product.getFpName());
-            productMap.put("fpDescription", product.getFpDescription());
-            productMap.put("annualRate", product.getAnnualRate());
-            productMap.put("tags", product.getTagsArray());
-            productList.add(productMap);
-        }
-        
-        responseData.put("products", productList);
-        
-        if (productList.isEmpty()) {
-            Result<Map<String, Object>> result = new Result<>();
-            result.setCode(200);
-            result.setMessage("暂无金融产品数据");
-            result.setData(responseData);
-            return result;
+    public ResponseEntity<?> getFinancialProducts() {
+        try {
+            return referenceDataCacheService.getHomeProductPayload().toResponseEntity();
+        } catch (Exception e) {
+            return ResponseEntity.ok(Result.error(500, "服务器内部错误"));
         }
-        
-        return Result.success(responseData);
-    } catch (Exception e) {
-        return Result.error(500, "服务器内部错误");
     }
-  }
     
     /**
      * 金融产品详细展示接口
@@ -6,6 +6,7 @@ import java.util.ArrayList;
 import com.ltqtest.springbootquickstart.common.Result;
 import com.ltqtest.springbootquickstart.entity.FinancialProduct;
 import com.ltqtest.springbootquickstart.entity.LoanApplication;
+import com.ltqtest.springbootquickstart.entity.LoanDocument;
 import com.ltqtest.springbootquickstart.entity.ApprovalRecord;
 import com.ltqtest.springbootquickstart.entity.RepaymentPlan;
 import com.ltqtest.springbootquickstart.entity.RepaymentRecord;
@@ -18,13 +19,29 @@ import com.ltqtest.springbootquickstart.repository.RepaymentPlanRepository;
 import com.ltqtest.springbootquickstart.repository.RepaymentRecordRepository;
 import com.ltqtest.springbootquickstart.repository.LoanStatusRepository;
 import com.ltqtest.springbootquickstart.repository.UserRepository;
+import com.ltqtest.springbootquickstart.service.FinancialProductSearchService;
+import com.ltqtest.springbootquickstart.service.LoanApprovalQueueService;
+import com.ltqtest.springbootquickstart.service.LoanDocumentService;
+import com.ltqtest.springbootquickstart.service.LoanOverdueSweepService;
+import com.ltqtest.springbootquickstart.service.ReferenceDataCacheService;
+import com.ltqtest.springbootquickstart.service.RepaymentService;
 import java.util.Date;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import java.io.File;
-import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -52,22 +69,40 @@ public class LoanController {
     
     @Autowired
     private LoanStatusRepository loanStatusRepository;
+
+    @Autowired
+    private RepaymentService repaymentService;
+
+    @Autowired
+    private LoanOverdueSweepService loanOverdueSweepService;
+
+    @Autowired
+    private LoanApprovalQueueService loanApprovalQueueService;
+
+    @Autowired
+    private LoanDocumentService loanDocumentService;
+
+    @Autowired
+    private FinancialProductSearchService financialProductSearchService;
+
+    @Autowired
+    private ReferenceDataCacheService referenceDataCacheService;
+
+    // 日期格式化（线程安全，可共享）
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
     
     /**
      * 获取贷款产品列表
+     * 响应由参考数据缓存预先序列化，支持ETag/If-None-Match返回304
      * @return 贷款产品列表响应
      */
     @GetMapping("/products")
-    public Result<List<FinancialProduct>> getLoanProducts() {
+    public ResponseEntity<?> getLoanProducts() {
         try {
-            // 获取所有贷款产品
-            List<FinancialProduct> products = financialProductRepository.findAll();
-            
-            // 返回成功响应，包含产品列表
-            return Result.success(products);
+            return referenceDataCacheService.getLoanProductPayload().toResponseEntity();
         }catch (Exception e) {
             // 捕获异常，返回错误响应
-            return Result.error("获取贷款产品列表失败");
+            return ResponseEntity.ok(Result.error("获取贷款产品列表失败"));
         }
     }
     /**
@@ -78,29 +113,13 @@ public class LoanController {
     @GetMapping("/pending")
     public Result<List<Map<String, Object>>> getPendingLoanApplications() {
         try {
-            // 查询状态为1（已提交）的贷款申请
-            List<LoanApplication> applications = loanApplicationRepository.findByStatus(1);
+            // 查询状态为1（已提交）的贷款申请，产品信息随申请一起抓取
+            List<LoanApplication> applications = loanApplicationRepository.findByStatusFetchProduct(1);
             
             // 构建响应数据
             List<Map<String, Object>> resultList = new ArrayList<>();
             for (LoanApplication application : applications) {
-                Map<String, Object> applicationMap = new HashMap<>();
-                applicationMap.put("applicationId", application.getApplicationId());
-                applicationMap.put("userId", application.getUserId());
-                
-                // 获取产品信息
-                Optional<FinancialProduct> productOpt = financialProductRepository.findById(application.getFpId());
-                if (productOpt.isPresent()) {
-                    applicationMap.put("productName", productOpt.get().getFpName());
-                } else {
-                    applicationMap.put("productName", "未知产品");
-                }
-                
-                applicationMap.put("amount", application.getAmount());
-                applicationMap.put("term", application.getTerm());
-                applicationMap.put("applyTime", application.getApplyTime());
-                
-                resultList.add(applicationMap);
+                resultList.add(buildPendingApplicationMap(application));
             }
             
             return Result.success(resultList);
@@ -111,6 +130,146 @@ public class LoanController {
     }
      
     
+    /**
+     * 审批队列
+     * 接口: /api/loan/queue
+     * 按申请时间游标分页返回未被领取、领取已过期或由当前审批人领取的待审批申请
+     * 参数: userId, size, lastApplyTime（上一页最后一条的申请时间戳，毫秒）, lastApplicationId
+     */
+    @GetMapping("/queue")
+    public Result<Map<String, Object>> getApprovalQueue(
+            @RequestParam Integer userId,
+            @RequestParam(value = "size", required = false, defaultValue = "20") Integer size,
+            @RequestParam(value = "lastApplyTime", required = false) Long lastApplyTime,
+            @RequestParam(value = "lastApplicationId", required = false) Integer lastApplicationId) {
+        try {
+            Integer approverId = resolveApproverId(userId);
+            if (approverId == null) {
+                return Result.error(403, "用户不是审批人");
+            }
+            if (size == null || size <= 0) {
+                return Result.error(400, "参数错误：size必须为正整数");
+            }
+            if (size > 100) {
+                size = 100;
+            }
+            if (lastApplyTime != null && lastApplicationId == null) {
+                return Result.error(400, "参数错误：翻页时lastApplicationId不能为空");
+            }
+            
+            List<LoanApplication> applications = loanApprovalQueueService.findQueue(approverId,
+                    lastApplyTime != null ? new Date(lastApplyTime) : null, lastApplicationId, size);
+            
+            // 构建响应数据
+            List<Map<String, Object>> resultList = new ArrayList<>();
+            for (LoanApplication application : applications) {
+                Map<String, Object> applicationMap = buildPendingApplicationMap(application);
+                applicationMap.put("claimedBy", application.getClaimedBy());
+                applicationMap.put("claimExpireTime", application.getClaimExpireTime());
+                resultList.add(applicationMap);
+            }
+            
+            Map<String, Object> responseData = new HashMap<>();
+            responseData.put("applications", resultList);
+            responseData.put("hasMore", applications.size() == size);
+            if (!applications.isEmpty()) {
+                LoanApplication last = applications.get(applications.size() - 1);
+                responseData.put("lastApplyTime", last.getApplyTime().getTime());
+                responseData.put("lastApplicationId", last.getApplicationId());
+            }
+            return Result.success(200, "成功", responseData);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return Result.error(500, "获取审批队列失败：" + e.getMessage());
+        }
+    }
+    
+    /**
+     * 领取待审批申请
+     * 接口: /api/loan/queue/claim
+     * 请求方式: POST
+     * 参数: userId, applicationId
+     */
+    @PostMapping("/queue/claim")
+    public Result<Map<String, Object>> claimLoanApplication(@RequestBody Map<String, Object> requestBody) {
+        try {
+            if (!requestBody.containsKey("applicationId") || !requestBody.containsKey("userId")) {
+                return Result.error(400, "缺少必填参数");
+            }
+            Integer applicationId = Integer.valueOf(requestBody.get("applicationId").toString());
+            Integer approverId = resolveApproverId(Integer.valueOf(requestBody.get("userId").toString()));
+            if (approverId == null) {
+                return Result.error(403, "用户不是审批人");
+            }
+            
+            Date expireTime = loanApprovalQueueService.claim(applicationId, approverId);
+            if (expireTime == null) {
+                return Result.error(409, "该申请不存在、已被审批或已被其他审批人领取");
+            }
+            
+            Map<String, Object> responseData = new HashMap<>();
+            responseData.put("applicationId", applicationId);
+            responseData.put("claimExpireTime", expireTime);
+            return Result.success(200, "领取成功", responseData);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return Result.error(500, "领取申请失败：" + e.getMessage());
+        }
+    }
+    
+    /**
+     * 释放已领取的申请
+     * 接口: /api/loan/queue/release
+     * 请求方式: POST
+     * 参数: userId, applicationId
+     */
+    @PostMapping("/queue/release")
+    public Result<?> releaseLoanApplication(@RequestBody Map<String, Object> requestBody) {
+        try {
+            if (!requestBody.containsKey("applicationId") || !requestBody.containsKey("userId")) {
+                return Result.error(400, "缺少必填参数");
+            }
+            Integer applicationId = Integer.valueOf(requestBody.get("applicationId").toString());
+            Integer approverId = resolveApproverId(Integer.valueOf(requestBody.get("userId").toString()));
+            if (approverId == null) {
+                return Result.error(403, "用户不是审批人");
+            }
+            
+            if (!loanApprovalQueueService.release(applicationId, approverId)) {
+                return Result.error(409, "该申请未被当前审批人领取");
+            }
+            return Result.success(200, "释放成功", null);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return Result.error(500, "释放申请失败：" + e.getMessage());
+        }
+    }
+    
+    // 待审批申请的响应数据
+    private Map<String, Object> buildPendingApplicationMap(LoanApplication application) {
+        Map<String, Object> applicationMap = new HashMap<>();
+        applicationMap.put("applicationId", application.getApplicationId());
+        applicationMap.put("userId", application.getUserId());
+        FinancialProduct product = application.getFinancialProduct();
+        applicationMap.put("productName", product != null ? product.getFpName() : "未知产品");
+        applicationMap.put("amount", application.getAmount());
+        applicationMap.put("term", application.getTerm());
+        applicationMap.put("applyTime", application.getApplyTime());
+        return applicationMap;
+    }
+    
+    // 根据用户ID获取审批人ID，用户不存在或不是审批人时返回null
+    private Integer resolveApproverId(Integer userId) {
+        if (userId == null) {
+            return null;
+        }
+        User user = userRepository.findByUserId(userId).orElse(null);
+        if (user == null || user.getApproverId() == null || user.getApproverId() == 0) {
+            return null;
+        }
+        return user.getApproverId();
+    }
+    
     /**
      * 提交贷款申请
      * POST /api/loan/apply
@@ -134,6 +293,17 @@ public class LoanController {
                 return Result.error("指定的贷款产品不存在");
             }
             
+            // 先将材料流式写入存储并校验大小和类型，全部通过后再保存申请
+            // 后续材料校验失败或申请保存失败时，已写入的文件不立即删除，由定时清理任务在宽限期后回收
+            List<LoanDocumentService.StoredFile> storedFiles = new ArrayList<>();
+            if (documents != null) {
+                for (MultipartFile file : documents) {
+                    if (file != null && !file.isEmpty()) {
+                        storedFiles.add(loanDocumentService.store(file));
+                    }
+                }
+            }
+            
             // 创建贷款申请实体
             LoanApplication application = new LoanApplication();
             application.setUserId(userId);
@@ -143,66 +313,16 @@ public class LoanController {
             application.setStatus(1); // 待审批（对应loan_status表中的1）
             application.setApplyTime(new java.util.Date());
             
-            // 处理文件信息
-            if (documents != null && documents.length > 0 && !documents[0].isEmpty()) {
-                // 文件保存路径设置 - 使用应用根目录下的uploads文件夹
-                String uploadDir = System.getProperty("user.dir") + "/uploads/loan_documents/" + userId + "/" + System.currentTimeMillis() + "/";
-                File directory = new File(uploadDir);
-                
-                // 创建目录（如果不存在）
-                if (!directory.exists()) {
-                    boolean created = directory.mkdirs();
-                    if (!created) {
-                        throw new RuntimeException("无法创建文件存储目录");
-                    }
-                }
-                
-                StringBuilder filePaths = new StringBuilder();
-                
-                // 遍历并保存每个文件
-                for (MultipartFile file : documents) {
-                    if (!file.isEmpty()) {
-                        try {
-                            // 生成唯一文件名，避免文件覆盖
-                            String originalFilename = file.getOriginalFilename();
-                            String fileExtension = "";
-                            if (originalFilename != null && originalFilename.contains(".")) {
-                                fileExtension = originalFilename.substring(originalFilename.lastIndexOf("."));
-                            }
-                            
-                            String uniqueFilename = System.currentTimeMillis() + "_" + userId + "_" + productName + fileExtension;
-                            String filePath = uploadDir + uniqueFilename;
-                            
-                            // 保存文件到磁盘
-                            File dest = new File(filePath);
-                            file.transferTo(dest);
-                            
-                            // 存储文件路径
-                            filePaths.append(filePath).append(",");
-                            
-                        } catch (IOException e) {
-                            throw new RuntimeException("文件保存失败: " + e.getMessage());
-                        }
-                    }
-                }
-                
-                // 移除最后一个逗号
-                if (filePaths.length() > 0) {
-                    filePaths.setLength(filePaths.length() - 1);
-                }
-                
-                // 设置文件路径到应用实体
-                application.setDocuments(filePaths.toString());
-            }
-            
-            // 保存贷款申请
-            LoanApplication savedApplication = loanApplicationRepository.save(application);
+            // 在同一事务中保存贷款申请和材料记录
+            LoanApplication savedApplication = loanDocumentService.saveApplication(application, storedFiles);
             
             // 构建返回数据
             Map<String, Integer> responseData = new HashMap<>();
             responseData.put("applicationId", savedApplication.getApplicationId());
             
             return Result.success(responseData);
+        } catch (IllegalArgumentException e) {
+            return Result.error(400, e.getMessage());
         } catch (Exception e) {
             e.printStackTrace();
             return Result.error("提交贷款申请失败");
@@ -289,12 +409,95 @@ public class LoanController {
             List<ApprovalRecord> approvalRecords = approvalRecordRepository.findByApplicationId(id);
             resultMap.put("approvalRecords", approvalRecords);
             
+            // 查询申请材料
+            resultMap.put("documents", buildDocumentList(loanDocumentService.findByApplicationId(id)));
+            
             return Result.success(resultMap);
         } catch (Exception e) {
             return Result.error("获取贷款申请详情失败: " + e.getMessage());
         }
     }
     
+    /**
+     * 获取贷款申请的材料列表
+     * 接口: /api/loan/applications/{id}/documents
+     */
+    @GetMapping("/applications/{id}/documents")
+    public Result<List<Map<String, Object>>> getLoanDocuments(@PathVariable Integer id) {
+        try {
+            if (!loanApplicationRepository.existsById(id)) {
+                return Result.error(404, "贷款申请不存在");
+            }
+            return Result.success(200, "成功", buildDocumentList(loanDocumentService.findByApplicationId(id)));
+        } catch (Exception e) {
+            return Result.error(500, "获取申请材料失败：" + e.getMessage());
+        }
+    }
+    
+    /**
+     * 下载贷款申请材料
+     * 接口: /api/loan/documents/{documentId}?userId=
+     * 只有申请人本人或领取/审批过该申请的审批人可以下载，其他情况一律返回404，不暴露材料是否存在；
+     * 文件以Resource流式返回，支持Range分段下载；ETag为文件内容的SHA-256
+     */
+    @GetMapping("/documents/{documentId}")
+    public ResponseEntity<Resource> downloadLoanDocument(@PathVariable Integer documentId,
+                                                         @RequestParam(value = "userId", required = false) Integer userId) {
+        if (userId == null) {
+            return ResponseEntity.notFound().build();
+        }
+        Optional<LoanDocument> documentOpt = loanDocumentService.findById(documentId);
+        if (!documentOpt.isPresent() || !canAccessDocument(documentOpt.get(), userId)) {
+            return ResponseEntity.notFound().build();
+        }
+        LoanDocument document = documentOpt.get();
+        File file = loanDocumentService.getFile(document);
+        if (!file.isFile()) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        String filename = document.getOriginalName() != null ? document.getOriginalName() : document.getSha256();
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(document.getContentType()))
+                .eTag("\"" + document.getSha256() + "\"")
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.inline().filename(filename, StandardCharsets.UTF_8).build().toString())
+                .body(new FileSystemResource(file));
+    }
+    
+    // 申请人本人，或领取了该申请、审批过该申请的审批人可以访问材料
+    private boolean canAccessDocument(LoanDocument document, Integer userId) {
+        if (userId.equals(document.getUserId())) {
+            return true;
+        }
+        Integer approverId = resolveApproverId(userId);
+        if (approverId == null) {
+            return false;
+        }
+        LoanApplication application = loanApplicationRepository.findById(document.getApplicationId()).orElse(null);
+        if (application == null) {
+            return false;
+        }
+        return approverId.equals(application.getClaimedBy())
+                || approvalRecordRepository.existsByApplicationIdAndApproverId(application.getApplicationId(), approverId);
+    }
+    
+    // 申请材料列表的响应数据
+    private List<Map<String, Object>> buildDocumentList(List<LoanDocument> documents) {
+        List<Map<String, Object>> documentList = new ArrayList<>();
+        for (LoanDocument document : documents) {
+            Map<String, Object> documentMap = new HashMap<>();
+            documentMap.put("documentId", document.getDocumentId());
+            documentMap.put("originalName", document.getOriginalName());
+            documentMap.put("contentType", document.getContentType());
+            documentMap.put("size", document.getSize());
+            documentMap.put("uploadTime", document.getUploadTime());
+            documentList.add(documentMap);
+        }
+        return documentList;
+    }
+    
     /**
      * 删除贷款产品
      * @param id 产品ID
@@ -310,6 +513,7 @@ public class LoanController {
             
             // 删除产品
             financialProductRepository.deleteById(id);
+            referenceDataCacheService.refreshFinancialProducts();
             
             Result<Object> result = new Result<>();
             result.setCode(200);
@@ -389,6 +593,7 @@ public class LoanController {
             
             // 保存产品
             FinancialProduct savedProduct = financialProductRepository.save(product);
+            referenceDataCacheService.refreshFinancialProducts();
             
             // 构建响应数据
             Map<String, Object> responseData = new HashMap<>();
@@ -492,7 +697,8 @@ public class LoanController {
             }
             
             // 保存修改后的产品
-            financialProductRepository.save(product);
+            FinancialProduct savedProduct = financialProductRepository.save(product);
+            referenceDataCacheService.refreshFinancialProducts();
             
             // 返回成功响应
             return Result.success(200, "修改成功", null);
@@ -542,22 +748,32 @@ public class LoanController {
                 return Result.error("该申请已完成审批，无法重复操作");
             }
             
-            // 更新贷款申请状态
+            // 已被其他审批人领取且未过期的申请不能审批
+            if (loanApprovalQueueService.isClaimedByOther(application, user.getApproverId())) {
+                return Result.error(409, "该申请已被其他审批人领取");
+            }
+            
+            // 目标状态：3已审核（通过），2已打回（拒绝）
+            Integer targetStatus;
             if (decision == 1) {
-                application.setStatus(3); // 已审核（对应loan_status表中的3）
-                // 保存更新后的贷款申请
-                loanApplicationRepository.save(application);
-                
-                // 生成还款计划
-                generateRepaymentPlan(application);
+                targetStatus = 3;
             } else if (decision == 0) {
-                application.setStatus(2); // 已打回（对应loan_status表中的2）
-                // 保存更新后的贷款申请
-                loanApplicationRepository.save(application);
+                targetStatus = 2;
             } else {
                 return Result.error("无效的审批决定，decision只能是0或1");
             }
             
+            // 按原状态条件更新，并发审批时只有一个请求能成功
+            if (loanApplicationRepository.updateStatusForApproval(applicationId, targetStatus) == 0) {
+                return Result.error("该申请已完成审批，无法重复操作");
+            }
+            application.setStatus(targetStatus);
+            
+            // 通过时生成还款计划
+            if (decision == 1) {
+                generateRepaymentPlan(application);
+            }
+            
             // 创建审批记录
             ApprovalRecord approvalRecord = new ApprovalRecord();
             approvalRecord.setApplicationId(applicationId);
@@ -669,49 +885,35 @@ public class LoanController {
                 return Result.error(400, "无效的用户ID");
             }
             
-            // 通过userId查找所有贷款申请
-            List<LoanApplication> applications = loanApplicationRepository.findByUserId(userId);
-            
-            if (applications == null || applications.isEmpty()) {
+            // 一次查询该用户所有贷款申请的还款计划
+            List<Object[]> planRows = repaymentPlanRepository.findPlanViewsByUserId(userId);
+            if (planRows.isEmpty() && !loanApplicationRepository.existsByUserId(userId)) {
                 return Result.error(404, "未找到该用户的贷款申请记录");
             }
             
-            // 转换为需要的格式
-            List<Map<String, Object>> resultList = new ArrayList<>();
-            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-            
-            // 遍历所有贷款申请
-            for (LoanApplication application : applications) {
-                Integer applicationId = application.getApplicationId();
-                
-                // 查询该贷款申请的还款计划
-                List<RepaymentPlan> repaymentPlans = repaymentPlanRepository.findByApplicationId(applicationId);
+            // 转换为需要的格式，逾期状态在读取时根据到期日期计算
+            List<Map<String, Object>> resultList = new ArrayList<>(planRows.size());
+            Date now = new Date();
+            for (Object[] row : planRows) {
+                Date dueDate = (Date) row[1];
+                double remainingAmount = ((Number) row[2]).doubleValue();
                 
-                // 检查并更新逾期状态
-                checkAndUpdateOverdueStatus(applicationId, repaymentPlans);
-                
-                // 重新查询更新后的还款计划
-                repaymentPlans = repaymentPlanRepository.findByApplicationId(applicationId);
-                
-                // 处理每个还款计划
-                for (RepaymentPlan plan : repaymentPlans) {
-                    Map<String, Object> planMap = new HashMap<>();
-                    planMap.put("applicationId", applicationId); // 添加申请ID以便区分不同申请的还款计划
-                    planMap.put("dueDate", dateFormat.format(plan.getDueDate()));
-                    planMap.put("RemainingAmout", plan.getRemainingAmount());
-                    // 根据剩余金额设置状态，符合新的六种贷款状态规范
-                    if (plan.getRemainingAmount() > 0) {
-                        // 检查是否逾期（状态码6）
-                        if (plan.getDueDate().before(new Date())) {
-                            planMap.put("status", "已逾期"); // 对应状态码6：已逾期
-                        } else {
-                            planMap.put("status", "未还清"); // 对应状态码4：未还清
-                        }
+                Map<String, Object> planMap = new HashMap<>();
+                planMap.put("applicationId", row[0]); // 添加申请ID以便区分不同申请的还款计划
+                planMap.put("dueDate", formatDate(dueDate));
+                planMap.put("RemainingAmout", remainingAmount);
+                // 根据剩余金额设置状态，符合新的六种贷款状态规范
+                if (remainingAmount > 0) {
+                    // 检查是否逾期（状态码6）
+                    if (dueDate.before(now)) {
+                        planMap.put("status", "已逾期"); // 对应状态码6：已逾期
                     } else {
-                        planMap.put("status", "已还款"); // 对应状态码5：已还款
+                        planMap.put("status", "未还清"); // 对应状态码4：未还清
                     }
-                    resultList.add(planMap);
+                } else {
+                    planMap.put("status", "已还款"); // 对应状态码5：已还款
                 }
+                resultList.add(planMap);
             }
             
             return Result.success(200, "成功", resultList);
@@ -737,122 +939,17 @@ public class LoanController {
             Float amount = Float.parseFloat(requestBody.get("amount").toString());
             Date payDate = new SimpleDateFormat("yyyy-MM-dd").parse(requestBody.get("payDate").toString());    
 
-            // 获取还款计划
-            List<RepaymentPlan> repaymentPlans = repaymentPlanRepository.findByApplicationId(applicationId);
-            if (repaymentPlans == null || repaymentPlans.isEmpty()) {
-                return Result.error(404, "未找到还款计划");
-            }
-            
-            // 计算总剩余还款金额
-            double totalRemainingToPay = repaymentPlans.stream()
-                    .mapToDouble(RepaymentPlan::getRemainingAmount)
-                    .sum();
-            
-            double remainingAmount = amount;
-            
-            // 如果还款金额大于等于总剩余还款金额，将所有未还清的还款计划置为0
-            if (amount >= totalRemainingToPay) {
-                for (RepaymentPlan plan : repaymentPlans) {
-                    if (plan.getRemainingAmount() > 0) {
-                        plan.setRemainingAmount(0f);
-                        // 使用符合新规范的状态值，已还款对应状态码5
-                        plan.setStatus("已还款");
-                        repaymentPlanRepository.save(plan);
-                    }
-                }
-                remainingAmount = 0; // 全部还清，无剩余金额
-            } else {
-                // 否则按原有逻辑处理部分还款
-                // 遍历还款计划，更新剩余金额
-                for (RepaymentPlan plan : repaymentPlans) {
-                    if (plan.getRemainingAmount() > 0 && remainingAmount > 0) {
-                        if (plan.getRemainingAmount() <= remainingAmount) {
-                            // 当前分期可以完全还清
-                            remainingAmount -= plan.getRemainingAmount();
-                            plan.setRemainingAmount(0f);
-                            // 使用符合新规范的状态值，已还款对应状态码5
-                            plan.setStatus("已还款");
-                        } else {
-                            // 当前分期部分还款
-                            plan.setRemainingAmount(plan.getRemainingAmount() - remainingAmount);
-                            remainingAmount = 0f;
-                        }
-                        repaymentPlanRepository.save(plan);
-                    }
-                    if (remainingAmount <= 0) {
-                        break;
-                    }
-                }
-            }
-
-            // 从贷款申请表中获取用户ID
-            Optional<LoanApplication> loanApplicationOpt = loanApplicationRepository.findById(applicationId);
-            if (!loanApplicationOpt.isPresent()) {
-                return Result.error(404, "贷款申请不存在");
-            }
-            Integer userId = loanApplicationOpt.get().getUserId();
-
-            // 更新贷款申请状态
-            LoanApplication loanApplication = loanApplicationOpt.get();
-            if (amount >= totalRemainingToPay) {
-                loanApplication.setStatus(5); // 设置为状态码5：已还款
-            } else {
-                // 检查是否有逾期
-                boolean isOverdue = false;
-                List<RepaymentPlan> updatedPlans = repaymentPlanRepository.findByApplicationId(applicationId);
-                for (RepaymentPlan plan : updatedPlans) {
-                    if (plan.getRemainingAmount() > 0 && plan.getDueDate().before(new Date())) {
-                        isOverdue = true;
-                        break;
-                    }
-                }
-                // 如果有逾期，设置为状态码6：已逾期；否则设置为状态码4：未还清
-                loanApplication.setStatus(isOverdue ? 6 : 4);
-            }
-            loanApplicationRepository.save(loanApplication);
-
-            // 创建还款记录
-            RepaymentRecord record = new RepaymentRecord();
-            record.setApplicationId(applicationId);
-            record.setUserId(userId); // 使用从贷款申请中获取的用户ID
-            // 如果还款金额大于实际需要还款金额，将该次还款数记为实际需要还款金额
-            if (amount > totalRemainingToPay) {
-                record.setAmount((float) totalRemainingToPay);
-            } else {
-                record.setAmount(amount);
-            }
-            record.setPayDate(payDate);
-            // 根据还款情况设置状态，符合新的六种贷款状态规范
-            if (amount >= totalRemainingToPay) {
-                record.setStatus("已还款"); // 对应状态码5
-            } else {
-                // 检查是否有逾期
-                boolean isOverdue = false;
-                List<RepaymentPlan> updatedPlans = repaymentPlanRepository.findByApplicationId(applicationId);
-                for (RepaymentPlan plan : updatedPlans) {
-                    if (plan.getRemainingAmount() > 0 && plan.getDueDate().before(new Date())) {
-                        isOverdue = true;
-                        break;
-                    }
-                }
-                record.setStatus(isOverdue ? "已逾期" : "未还清"); // 根据是否逾期设置状态
-            }
-            repaymentRecordRepository.save(record);
-
-            // 计算总的剩余还款金额
-            List<RepaymentPlan> updatedPlans = repaymentPlanRepository.findByApplicationId(applicationId);
-            double planRemaining = 0;
-            if (updatedPlans != null) {
-                planRemaining = updatedPlans.stream()
-                        .mapToDouble(RepaymentPlan::getRemainingAmount)
-                        .sum();
-            }
-            Float totalRemaining = (float) (planRemaining + remainingAmount);
+            // 在一个事务中完成还款分摊、申请状态更新和还款记录写入
+            Float totalRemaining = repaymentService.repay(applicationId, amount, payDate);
 
             Map<String, Object> data = new HashMap<>();
             data.put("remainingAmount", totalRemaining);
 
             return Result.success(200, "还款成功", data);
+        } catch (IllegalStateException e) {
+            return Result.error(404, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return Result.error(400, e.getMessage());
         } catch (Exception e) {
             e.printStackTrace();
             return Result.error(500, "还款失败：" + e.getMessage());
@@ -870,26 +967,16 @@ public class LoanController {
                 return Result.error(400, "用户ID参数错误");
             }
 
-            // 查询用户的所有贷款申请
-            List<LoanApplication> loanApplications = loanApplicationRepository.findByUserId(userId);
-            
-            // 检查并更新所有贷款申请的逾期状态
-            for (LoanApplication application : loanApplications) {
-                List<RepaymentPlan> plans = repaymentPlanRepository.findByApplicationId(application.getApplicationId());
-                checkAndUpdateOverdueStatus(application.getApplicationId(), plans);
-            }
-
             // 查询还款记录
             List<RepaymentRecord> repaymentRecords = repaymentRecordRepository.findByUserId(userId);
             List<Map<String, Object>> resultList = new ArrayList<>();
-            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
 
             // 转换为返回格式
             for (RepaymentRecord record : repaymentRecords) {
                 Map<String, Object> recordMap = new HashMap<>();
                 recordMap.put("applicationId", record.getApplicationId());
                 recordMap.put("amount", record.getAmount());
-                recordMap.put("payDate", dateFormat.format(record.getPayDate()));
+                recordMap.put("payDate", formatDate(record.getPayDate()));
                 resultList.add(recordMap);
             }
 
@@ -900,51 +987,31 @@ public class LoanController {
         }
     }
     
+    // 格式化日期为yyyy-MM-dd，兼容java.sql.Date等子类
+    private static String formatDate(Date date) {
+        if (date == null) {
+            return null;
+        }
+        return Instant.ofEpochMilli(date.getTime()).atZone(ZoneId.systemDefault()).toLocalDate().format(DATE_FORMATTER);
+    }
+    
     /**
-     * 检查并更新贷款的逾期状态
-     * @param applicationId 贷款申请ID
-     * @param repaymentPlans 还款计划列表
+     * 逾期扫描统计
+     * 接口: /api/loan/overdue-sweep/stats
      */
-    private void checkAndUpdateOverdueStatus(Integer applicationId, List<RepaymentPlan> repaymentPlans) {
-        try {
-            // 获取贷款申请
-            Optional<LoanApplication> loanApplicationOpt = loanApplicationRepository.findById(applicationId);
-            if (!loanApplicationOpt.isPresent()) {
-                return;
-            }
-            LoanApplication loanApplication = loanApplicationOpt.get();
-            
-            // 检查是否有未还款且已逾期的计划
-            boolean hasOverdue = false;
-            for (RepaymentPlan plan : repaymentPlans) {
-                if (plan.getRemainingAmount() > 0 && plan.getDueDate().before(new Date())) {
-                    hasOverdue = true;
-                    // 更新还款计划状态为已逾期
-                    plan.setStatus("已逾期");
-                    repaymentPlanRepository.save(plan);
-                }
-            }
-            
-            // 如果有逾期且当前状态不是已还款，则更新贷款申请状态为已逾期（状态码6）
-            if (hasOverdue && loanApplication.getStatus() != 5) {
-                loanApplication.setStatus(6); // 已逾期
-                loanApplicationRepository.save(loanApplication);
-            }
-        } catch (Exception e) {
-            // 记录异常但不抛出，避免影响主流程
-            e.printStackTrace();
-        }
+    @GetMapping("/overdue-sweep/stats")
+    public Result<Map<String, Object>> getOverdueSweepStats() {
+        return Result.success(200, "成功", loanOverdueSweepService.stats());
     }
     
-    // 1. 获取所有贷款状态
+    // 1. 获取所有贷款状态（由参考数据缓存预先序列化，支持ETag/If-None-Match返回304）
     @GetMapping("/status")
-    public Result<List<LoanStatus>> getAllLoanStatus() {
+    public ResponseEntity<?> getAllLoanStatus() {
         try {
-            List<LoanStatus> statusList = loanStatusRepository.findAll();
-            return Result.success(200, "成功", statusList);
+            return referenceDataCacheService.getLoanStatusPayload().toResponseEntity();
         } catch (Exception e) {
             e.printStackTrace();
-            return Result.error(500, "查询贷款状态失败：" + e.getMessage());
+            return ResponseEntity.ok(Result.error(500, "查询贷款状态失败：" + e.getMessage()));
         }
     }
     
@@ -975,6 +1042,7 @@ public class LoanController {
             
             // 保存到数据库
             LoanStatus savedStatus = loanStatusRepository.save(loanStatus);
+            referenceDataCacheService.refreshLoanStatuses();
             
             // 返回结果
             Map<String, Object> result = new HashMap<>();
@@ -1009,6 +1077,7 @@ public class LoanController {
             
             // 保存更新
             loanStatusRepository.save(loanStatus);
+            referenceDataCacheService.refreshLoanStatuses();
             
             return Result.success(200, "更新成功", null);
         } catch (Exception e) {
@@ -1028,6 +1097,7 @@ public class LoanController {
             
             // 删除状态
             loanStatusRepository.deleteById(id);
+            referenceDataCacheService.refreshLoanStatuses();
             
             return Result.success(200, "删除成功", null);
         } catch (Exception e) {
@@ -1040,30 +1110,38 @@ public class LoanController {
      * 搜索产品接口
      * 接口: /api/loan/searchproduct
      * 请求方式: POST
-     * 请求参数: q(产品名字)
-     * 返回: 符合搜索条件的产品列表
+     * 请求参数: q(关键词，匹配产品名称、描述和标签，多个关键词以空格分隔)，
+     *          可选 tag(标签)、prefix(名称前缀)、minRate/maxRate(年利率范围)、amount(申请金额)、limit(返回条数)
+     * 返回: 符合搜索条件的产品列表，按相关度排序
      */
     @PostMapping("/searchproduct")
     public Result<?> searchProduct(@RequestBody Map<String, Object> requestBody) {
         try {
-            // 验证参数
-            if (!requestBody.containsKey("q") || requestBody.get("q") == null || requestBody.get("q").toString().trim().isEmpty()) {
+            FinancialProductSearchService.SearchQuery query = new FinancialProductSearchService.SearchQuery();
+            query.setKeyword(getString(requestBody, "q"));
+            query.setTag(getString(requestBody, "tag"));
+            query.setNamePrefix(getString(requestBody, "prefix"));
+
+            // 验证参数：关键词、标签、前缀至少提供一个
+            if (isBlank(query.getKeyword()) && isBlank(query.getTag()) && isBlank(query.getNamePrefix())) {
                 return Result.error(400, "搜索关键词不能为空");
             }
-            
-            // 获取所有产品，然后进行名称过滤（模糊匹配）
-            List<FinancialProduct> allProducts = financialProductRepository.findAll();
-            List<FinancialProduct> matchedProducts = new ArrayList<>();
-            
-            // 获取搜索关键词
-            String searchKeyword = requestBody.get("q").toString().toLowerCase().trim();
-            for (FinancialProduct product : allProducts) {
-                // 模糊匹配产品名称
-                if (product.getFpName().toLowerCase().contains(searchKeyword)) {
-                    matchedProducts.add(product);
-                }
+
+            try {
+                String minRate = getString(requestBody, "minRate");
+                String maxRate = getString(requestBody, "maxRate");
+                String amount = getString(requestBody, "amount");
+                String limit = getString(requestBody, "limit");
+                query.setMinRate(isBlank(minRate) ? null : Float.valueOf(minRate));
+                query.setMaxRate(isBlank(maxRate) ? null : Float.valueOf(maxRate));
+                query.setAmount(isBlank(amount) ? null : Double.valueOf(amount).intValue());
+                query.setLimit(isBlank(limit) ? null : Double.valueOf(limit).intValue());
+            } catch (NumberFormatException e) {
+                return Result.error(400, "利率、金额或条数格式错误，请输入数字");
             }
-            
+
+            List<FinancialProduct> matchedProducts = financialProductSearchService.search(query);
+
             // 返回成功响应，包含匹配的产品列表
             return Result.success(200, "成功", matchedProducts);
         } catch (Exception e) {
@@ -1071,4 +1149,13 @@ public class LoanController {
             return Result.error(500, "搜索产品失败：" + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    private static String getString(Map<String, Object> requestBody, String key) {
+        Object value = requestBody.get(key);
+        return value == null ? null : value.toString().trim();
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isEmpty();
+    }
+}
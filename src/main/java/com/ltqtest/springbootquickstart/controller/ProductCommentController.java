@@ -1,10 +1,16 @@
 package com.ltqtest.springbootquickstart.controller;
 
 import com.ltqtest.springbootquickstart.entity.Product;
-import com.ltqtest.springbootquickstart.repository.ProductRepository;
+import com.ltqtest.springbootquickstart.service.CommentLikeService;
+import com.ltqtest.springbootquickstart.service.ProductCacheService;
+import com.ltqtest.springbootquickstart.service.ProductCommentService;
+import com.ltqtest.springbootquickstart.service.ProductEngagementService;
 import com.ltqtest.springbootquickstart.entity.ProductComment;
 import com.ltqtest.springbootquickstart.repository.ProductCommentRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -22,11 +28,23 @@ import java.util.Optional;
 @RestController
 @RequestMapping("/api/")
 public class ProductCommentController {
+
+    // 评论区每页顶级评论数上限
+    private static final int MAX_COMMENT_PAGE_SIZE = 100;
+
+    // 每条顶级评论附带的回复条数上限
+    private static final int MAX_REPLY_PREVIEW = 10;
     
     @Autowired
     private ProductCommentRepository productCommentRepository;
     @Autowired
-    private ProductRepository productRepository;
+    private ProductCacheService productCacheService;
+    @Autowired
+    private CommentLikeService commentLikeService;
+    @Autowired
+    private ProductCommentService productCommentService;
+    @Autowired
+    private ProductEngagementService productEngagementService;
     
     /**
      * 点赞功能接口
@@ -39,25 +57,15 @@ public class ProductCommentController {
             return Result.error(400, "评论ID不能为空");
         }
         
-        // 查找评论
-        Optional<ProductComment> commentOpt = productCommentRepository.findByProductCommentId(productCommentId);
-        if (!commentOpt.isPresent()) {
+        // 累加到内存计数器，由定时任务批量写回数据库
+        Long commentLikeCount = commentLikeService.add(productCommentId, 1);
+        if (commentLikeCount == null) {
             return Result.error(404, "评论不存在");
         }
         
-        // 增加点赞数
-        ProductComment comment = commentOpt.get();
-        Long currentLikeCount = comment.getCommentLikeCount();
-        comment.setCommentLikeCount(currentLikeCount != null ? currentLikeCount + 1 : 1);
-        productCommentRepository.save(comment);
-        
         // 返回最新的点赞数
         Map<String, Long> data = new HashMap<>();
-        data.put("commentLikeCount", comment.getCommentLikeCount());
-        
-        Map<String, Object> response = new HashMap<>();
-        response.put("code", 200);
-        response.put("data", data);
+        data.put("commentLikeCount", commentLikeCount);
         return Result.success(200, "点赞成功", data);
     }
 
@@ -72,25 +80,15 @@ public class ProductCommentController {
             return Result.error(400, "评论ID不能为空");
         }
         
-        // 查找评论
-        Optional<ProductComment> commentOpt = productCommentRepository.findByProductCommentId(productCommentId);
-        if (!commentOpt.isPresent()) {
+        // 累加到内存计数器，由定时任务批量写回数据库
+        Long commentLikeCount = commentLikeService.add(productCommentId, -1);
+        if (commentLikeCount == null) {
             return Result.error(404, "评论不存在");
         }
         
-        // 增加点赞数
-        ProductComment comment = commentOpt.get();
-        Long currentLikeCount = comment.getCommentLikeCount();
-        comment.setCommentLikeCount(currentLikeCount != null ? currentLikeCount - 1 : 1);
-        productCommentRepository.save(comment);
-        
         // 返回最新的点赞数
         Map<String, Long> data = new HashMap<>();
-        data.put("commentLikeCount", comment.getCommentLikeCount());
-        
-        Map<String, Object> response = new HashMap<>();
-        response.put("code", 200);
-        response.put("data", data);
+        data.put("commentLikeCount", commentLikeCount);
         return Result.success(200, "点赞成功", data);
     }
 
@@ -118,8 +116,8 @@ public class ProductCommentController {
             }
         }
         
-        // 执行级联删除操作
-        deleteCommentAndChildren(productCommentId);
+        // 执行级联删除操作（一次收集整棵子评论树后批量删除）
+        productCommentService.deleteCommentTree(productCommentId);
         
         // 返回成功响应
         Map<String, Object> response = new HashMap<>();
@@ -129,28 +127,6 @@ public class ProductCommentController {
         return Result.success(200, "删除成功", response);
     }
     
-    // 递归删除评论及其子评论
-    private void deleteCommentAndChildren(Long commentId) {
-        // 查找当前评论
-        Optional<ProductComment> commentOpt = productCommentRepository.findByProductCommentId(commentId);
-        if (commentOpt.isPresent()) {
-            // 首先查找所有引用此评论的子评论
-            // 1. 查找所有以当前评论为root_comment_id的子评论
-            List<ProductComment> childCommentsByRoot = productCommentRepository.findByRootCommentId(commentId);
-
-            // 合并所有子评论
-            List<ProductComment> allChildComments = new ArrayList<>();
-            allChildComments.addAll(childCommentsByRoot);
-            // 递归删除所有子评论
-            for (ProductComment child : allChildComments) {
-                deleteCommentAndChildren(child.getProductCommentId());
-            }
-            
-            // 最后删除当前评论
-            productCommentRepository.delete(commentOpt.get());
-        }
-    }
-    
     /**
      * 用户评论功能接口
      * 添加新评论到数据库
@@ -183,6 +159,7 @@ public class ProductCommentController {
             comment.setToCommentId(request.getToCommentId());
             // 保存评论到数据库
             productCommentRepository.save(comment);
+            productEngagementService.onCommentAdded(comment.getProductId(), comment.getSendTime());
     
             // 返回成功响应
             Map<String, Object> response = new HashMap<>();
@@ -243,25 +220,66 @@ public class ProductCommentController {
     /**
      * 获取商品所有信息，包括评论
      * 接口路径: GET /api/commentarea
+     * 顶级评论分页返回，每条顶级评论附带回复总数和最早的几条回复，回复数和回复预览各用一次分组查询得到
      * @param productId 商品ID
+     * @param page 页码，从1开始
+     * @param pageSize 每页顶级评论数
+     * @param sort 排序方式：time（最新在前，默认）或 likes（点赞多的在前）
+     * @param replyPreview 每条顶级评论附带的回复条数
      * @return 商品信息及对应的顶级评论
      */
     @GetMapping("/commentarea")
-    public Result<Map<String, Object>> getProductWithComments(@RequestParam Integer productId) {
+    public Result<Map<String, Object>> getProductWithComments(
+            @RequestParam Integer productId,
+            @RequestParam(value = "page", defaultValue = "1") Integer page,
+            @RequestParam(value = "page_size", defaultValue = "20") Integer pageSize,
+            @RequestParam(value = "sort", defaultValue = "time") String sort,
+            @RequestParam(value = "reply_preview", defaultValue = "3") Integer replyPreview) {
         try {
             // 验证参数
             if (productId == null || productId <= 0) {
                 return Result.error(400, "参数错误：商品ID无效");
             }
+            if (!"time".equals(sort) && !"likes".equals(sort)) {
+                return Result.error(400, "参数错误：排序方式只能为time或likes");
+            }
+            // 确保页码、每页条数和回复预览条数合法
+            if (page < 1) page = 1;
+            if (pageSize < 1 || pageSize > MAX_COMMENT_PAGE_SIZE) pageSize = 20;
+            if (replyPreview < 0) replyPreview = 0;
+            if (replyPreview > MAX_REPLY_PREVIEW) replyPreview = MAX_REPLY_PREVIEW;
             
             // 查询商品信息
-            Product product = productRepository.findByProductId(productId);
+            Product product = productCacheService.findByProductId(productId);
             if (product == null) {
                 return Result.error(404, "商品不存在");
             }
             
-            // 查询该商品的顶级评论（rootCommentId为null）
-            List<ProductComment> comments = productCommentRepository.findByProductIdAndRootCommentIdIsNull(productId);
+            // 分页查询该商品的顶级评论（rootCommentId为null）
+            Sort order = "likes".equals(sort)
+                    ? Sort.by(Sort.Order.desc("commentLikeCount"), Sort.Order.desc("sendTime"), Sort.Order.desc("productCommentId"))
+                    : Sort.by(Sort.Order.desc("sendTime"), Sort.Order.desc("productCommentId"));
+            Page<ProductComment> commentPage = productCommentRepository.findByProductIdAndRootCommentIdIsNull(
+                    productId, PageRequest.of(page - 1, pageSize, order));
+            List<ProductComment> comments = commentPage.getContent();
+            
+            // 当前页所有顶级评论的回复数和回复预览
+            List<Long> rootIds = new ArrayList<>();
+            for (ProductComment comment : comments) {
+                rootIds.add(comment.getProductCommentId());
+            }
+            Map<Long, Long> replyCounts = new HashMap<>();
+            Map<Long, List<Map<String, Object>>> replyPreviews = new HashMap<>();
+            if (!rootIds.isEmpty()) {
+                for (Object[] row : productCommentRepository.countRepliesByRootIds(productId, rootIds)) {
+                    replyCounts.put((Long) row[0], ((Number) row[1]).longValue());
+                }
+                if (replyPreview > 0) {
+                    for (ProductComment reply : productCommentRepository.findReplyPreviews(productId, rootIds, replyPreview)) {
+                        replyPreviews.computeIfAbsent(reply.getRootCommentId(), id -> new ArrayList<>()).add(toCommentMap(reply));
+                    }
+                }
+            }
             
             // 构建响应数据
             Map<String, Object> responseData = new HashMap<>();
@@ -272,6 +290,8 @@ public class ProductCommentController {
             responseData.put("salesVolumn", product.getSalesVolume());
             responseData.put("productImg", product.getProductImg());
             responseData.put("surplus", product.getSurplus());
+            // 评论数、点赞总数和最新评论时间
+            productEngagementService.get(productId).putTo(responseData);
             
             // 构建评论列表
             List<Map<String, Object>> commentList = new ArrayList<>();
@@ -281,11 +301,16 @@ public class ProductCommentController {
                 commentMap.put("content", comment.getContent());
                 commentMap.put("sendTime", comment.getSendTime());
                 commentMap.put("userId", comment.getUserId());
-                commentMap.put("commentLikeCount", comment.getCommentLikeCount()); 
+                commentMap.put("commentLikeCount", commentLikeService.currentCount(comment.getProductCommentId(), comment.getCommentLikeCount()));
+                commentMap.put("replyCount", replyCounts.getOrDefault(comment.getProductCommentId(), 0L));
+                commentMap.put("replies", replyPreviews.getOrDefault(comment.getProductCommentId(), new ArrayList<>()));
                 commentList.add(commentMap);
             }
             
             responseData.put("productComment", commentList);
+            responseData.put("total", commentPage.getTotalElements());
+            responseData.put("page", page);
+            responseData.put("pageSize", pageSize);
             
             return Result.success(200, "获取成功", responseData);
         } catch (Exception e) {
@@ -315,14 +340,7 @@ public class ProductCommentController {
             
             // 遍历子评论，构建评论信息
             for (ProductComment comment : childComments) {
-                Map<String, Object> commentMap = new HashMap<>();
-                commentMap.put("productCommentId", comment.getProductCommentId());
-                commentMap.put("toCommentId", comment.getToCommentId());
-                commentMap.put("content", comment.getContent());
-                commentMap.put("sendTime", comment.getSendTime());
-                commentMap.put("userId", comment.getUserId());
-                commentMap.put("commentLikeCount", comment.getCommentLikeCount());
-                commentList.add(commentMap);
+                commentList.add(toCommentMap(comment));
             }
             
             return Result.success(200, "成功返回子评论", commentList);
@@ -330,5 +348,16 @@ public class ProductCommentController {
             return Result.error(500, "服务器内部错误：" + e.getMessage());
         }
     }
-    
+
+    // 构建回复信息，点赞数包含尚未写回数据库的增量
+    private Map<String, Object> toCommentMap(ProductComment comment) {
+        Map<String, Object> commentMap = new HashMap<>();
+        commentMap.put("productCommentId", comment.getProductCommentId());
+        commentMap.put("toCommentId", comment.getToCommentId());
+        commentMap.put("content", comment.getContent());
+        commentMap.put("sendTime", comment.getSendTime());
+        commentMap.put("userId", comment.getUserId());
+        commentMap.put("commentLikeCount", commentLikeService.currentCount(comment.getProductCommentId(), comment.getCommentLikeCount()));
+        return commentMap;
+    }
 }
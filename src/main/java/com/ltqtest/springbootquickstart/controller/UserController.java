@@ -1,6 +1,7 @@
 package com.ltqtest.springbootquickstart.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.beans.factory.annotation.Value;
@@ -21,6 +22,9 @@ import com.ltqtest.springbootquickstart.entity.UserAddress;
 import com.ltqtest.springbootquickstart.repository.UserRepository;
 import com.ltqtest.springbootquickstart.repository.ExpertUserChatRecordRepository;
 import com.ltqtest.springbootquickstart.repository.UserAddressRepository;
+import com.ltqtest.springbootquickstart.service.ChatRecordEvent;
+import com.ltqtest.springbootquickstart.service.ImageThumbnailService;
+import com.ltqtest.springbootquickstart.util.ImageFileUtil;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -31,6 +35,7 @@ import java.util.logging.Logger;
 import org.springframework.dao.DataAccessException;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.core.io.Resource;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import java.nio.file.Files;
@@ -56,6 +61,12 @@ public class UserController {
 
     @Autowired
     private ExpertUserChatRecordRepository expertUserChatRecordRepository;
+
+    @Autowired
+    private ImageThumbnailService imageThumbnailService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
     
     @Value("${file.upload.base-path}")
     private String uploadBasePath;
@@ -91,14 +102,14 @@ public class UserController {
      * 获取用户头像图片数据
      * 接口路径: GET /api/user/avatar
      * @param userId 用户ID
-     * @return ResponseEntity<byte[]> 包含图片数据的响应
+     * @return ResponseEntity<Resource> 包含图片数据流的响应
      */
     @GetMapping("/user/avatar")
-    public ResponseEntity<byte[]> getUserAvatar(@RequestParam("userId") Integer userId) {
+    public ResponseEntity<Resource> getUserAvatar(@RequestParam("userId") Integer userId) {
         try {
             // 验证参数
             if (userId == null || userId <= 0) {
-                return ResponseEntity.badRequest().body(null);
+                return ResponseEntity.badRequest().build();
             }
             
             // 根据userId查询用户
@@ -136,32 +147,13 @@ public class UserController {
                 return ResponseEntity.notFound().build();
             }
             
-            // 读取文件内容
-            byte[] imageData = Files.readAllBytes(Paths.get(filePath));
-            
-            // 根据文件扩展名确定content-type
-            String extension = StringUtils.getFilenameExtension(fileName);
-            MediaType mediaType;
-            if ("png".equalsIgnoreCase(extension)) {
-                mediaType = MediaType.IMAGE_PNG;
-            } else if ("gif".equalsIgnoreCase(extension)) {
-                mediaType = MediaType.IMAGE_GIF;
-            } else {
-                // 默认使用JPEG
-                mediaType = MediaType.IMAGE_JPEG;
-            }
-            
-            logger.info("成功返回用户ID为" + userId + "的头像图片");
-            return ResponseEntity.ok()
-                    .contentType(mediaType)
-                    .body(imageData);
+            // 以流的方式返回头像，支持ETag/Last-Modified缓存校验和Range请求，无法识别类型时默认使用JPEG；
+            // 同一地址在更换头像后内容会变，每次都需用ETag重新校验
+            return ImageFileUtil.buildImageResponse(imageFile, MediaType.IMAGE_JPEG, ImageFileUtil.revalidateCacheControl());
                     
-        } catch (IOException e) {
-            logger.severe("读取用户ID为" + userId + "的头像文件时出错: " + e.getMessage());
-            return ResponseEntity.status(500).body(null);
         } catch (Exception e) {
             logger.severe("处理用户ID为" + userId + "的头像请求时发生未预期错误: " + e.getMessage());
-            return ResponseEntity.status(500).body(null);
+            return ResponseEntity.status(500).build();
         }
     }
     
@@ -516,6 +508,8 @@ public class UserController {
             try {
                 file.transferTo(dest.getAbsoluteFile());
                 logger.info("用户ID为" + userId + "的头像文件保存成功: " + dest.getAbsolutePath());
+                // 后台生成头像缩略图
+                imageThumbnailService.submit(dest.getAbsoluteFile(), ImageThumbnailService.AVATAR_SIZES);
             } catch (Exception e) {
                 logger.severe("用户ID为" + userId + "的头像文件保存失败: " + e.getMessage());
                 throw e; // 重新抛出异常以便外层捕获
@@ -589,6 +583,8 @@ public class UserController {
                     boolean deleted = oldFile.delete();
                     logger.info("" + (deleted ? "成功" : "失败") + "删除用户ID为" + userId + "的旧头像文件: " + oldFile.getAbsolutePath());
                 }
+                // 同时删除旧头像的缩略图
+                imageThumbnailService.deleteThumbnails(oldFile, ImageThumbnailService.AVATAR_SIZES);
             }
         } catch (Exception e) {
             throw new RuntimeException("清理旧头像文件失败", e);
@@ -782,6 +778,8 @@ public class UserController {
             LocalDateTime now = LocalDateTime.now();
             chatRecord.setSendTime(now);
             expertUserChatRecordRepository.save(chatRecord);
+            // 推送给正在查看该会话的专家和用户
+            eventPublisher.publishEvent(new ChatRecordEvent(chatRecord));
 
             return Result.success(200, "提问成功");
         } catch (Exception e) {
@@ -0,0 +1,47 @@
+package com.ltqtest.springbootquickstart.entity;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * 专家预约日程项（预约与用户姓名由一条关联查询直接构造）
+ */
+@Data
+@NoArgsConstructor
+public class AppointmentScheduleView {
+
+    private Long id; // 预约ID
+
+    private String date; // 预约日期
+
+    private String startTime; // 开始时间
+
+    private String endTime; // 结束时间
+
+    private String topic; // 咨询主题
+
+    private String status; // 预约状态
+
+    private String userName; // 预约用户姓名（无真实姓名时为用户名）
+
+    /**
+     * JPQL构造表达式使用，用户不存在时关联字段为null
+     */
+    public AppointmentScheduleView(Long id, LocalDate date, LocalTime startTime, LocalTime endTime,
+                                   String topic, String status, String realName, String username) {
+        this.id = id;
+        this.date = date.toString();
+        this.startTime = startTime.toString();
+        this.endTime = endTime.toString();
+        this.topic = topic;
+        this.status = status;
+        if (realName != null) {
+            this.userName = realName;
+        } else {
+            this.userName = username != null ? username : "未知用户";
+        }
+    }
+}
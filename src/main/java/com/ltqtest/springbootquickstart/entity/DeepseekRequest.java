@@ -0,0 +1,33 @@
+package com.ltqtest.springbootquickstart.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DeepSeek对话接口请求体
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeepseekRequest {
+
+    private String model; // 模型名称
+
+    private List<Message> messages; // 对话消息
+
+    private Boolean stream; // 是否以SSE流式返回
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Message {
+        private String role; // 角色：system/user/assistant
+        private String content; // 消息内容
+    }
+}
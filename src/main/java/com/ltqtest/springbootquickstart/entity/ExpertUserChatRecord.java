@@ -35,15 +35,23 @@ public class ExpertUserChatRecord {
     @Column(name = "expert_id", nullable = false)
     private Integer expertId; // 所属专家id
 
+    @Column(name = "ai_generated")
+    private Boolean aiGenerated; // 回答是否由AI自动生成（为空视为否）
+
     public ExpertUserChatRecord() {
     }
 
     public ExpertUserChatRecord(Long euChatId, String question, String answer, LocalDateTime sendTime, Integer userId, Integer expertId) {
+        this(euChatId, question, answer, sendTime, userId, expertId, null);
+    }
+
+    public ExpertUserChatRecord(Long euChatId, String question, String answer, LocalDateTime sendTime, Integer userId, Integer expertId, Boolean aiGenerated) {
         this.euChatId = euChatId;
         this.question = question;
         this.answer = answer;
         this.sendTime = sendTime;
         this.userId = userId;
         this.expertId = expertId;
+        this.aiGenerated = aiGenerated;
     }
 }
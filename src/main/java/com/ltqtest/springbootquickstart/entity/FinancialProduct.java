@@ -1,7 +1,12 @@
 package com.ltqtest.springbootquickstart.entity;
 
 import jakarta.persistence.*;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
 @Data
 @Entity
@@ -42,16 +47,26 @@ public class FinancialProduct {
     @Column(name = "term")
     private Integer term;
 
+    // 已拆分的标签数组及其对应的tags字符串，tags变化（含Hibernate直接赋值字段）时重新拆分
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private transient TagsCache tagsCache;
     
-    
-    // 获取标签数组的方法（用于API响应）
+    // 获取标签数组的方法（用于API响应），返回的数组为缓存实例，不要修改
     @Transient
     public String[] getTagsArray() {
-        if (tags == null || tags.isEmpty()) {
-            return new String[0];
+        String currentTags = tags;
+        TagsCache cache = tagsCache;
+        if (cache == null || cache.source() != currentTags) {
+            // 标签存储为逗号分隔的字符串
+            String[] tagsArray = currentTags == null || currentTags.isEmpty() ? new String[0] : currentTags.split(",");
+            cache = new TagsCache(currentTags, tagsArray);
+            tagsCache = cache;
         }
-        // 标签存储为逗号分隔的字符串
-        return tags.split(",");
+        return cache.tagsArray();
     }
     
     // 设置标签数组的方法（用于API请求）
@@ -70,4 +85,7 @@ public class FinancialProduct {
             this.tags = sb.toString();
         }
     }
+
+    private record TagsCache(String source, String[] tagsArray) {
+    }
 }
\ No newline at end of file
@@ -34,6 +34,12 @@ public class LoanApplication {
     @Column(name = "applyTime", nullable = false)
     private Date applyTime;
     
+    @Column(name = "claimedBy")
+    private Integer claimedBy; // 领取该申请的审批人ID，为空表示未被领取
+    
+    @Column(name = "claimExpireTime")
+    private Date claimExpireTime; // 领取到期时间，过期后其他审批人可重新领取
+    
     // 关联到金融产品
     @ManyToOne
     @JoinColumn(name = "fpId", referencedColumnName = "fpId", insertable = false, updatable = false)
@@ -0,0 +1,40 @@
+package com.ltqtest.springbootquickstart.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.util.Date;
+
+/**
+ * 贷款申请材料实体类
+ * 文件内容按SHA-256存储，相同内容的文件在磁盘上只保存一份
+ */
+@Data
+@Entity
+@Table(name = "loan_document")
+public class LoanDocument {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "documentId")
+    private Integer documentId;
+    
+    @Column(name = "applicationId", nullable = false)
+    private Integer applicationId;
+    
+    @Column(name = "userId", nullable = false)
+    private Integer userId;
+    
+    @Column(name = "sha256", nullable = false, length = 64)
+    private String sha256; // 文件内容的SHA-256，同时是存储文件名
+    
+    @Column(name = "originalName")
+    private String originalName; // 上传时的原始文件名
+    
+    @Column(name = "contentType", nullable = false, length = 100)
+    private String contentType; // 根据文件头识别出的类型
+    
+    @Column(name = "size", nullable = false)
+    private Long size; // 文件大小（字节）
+    
+    @Column(name = "uploadTime", nullable = false)
+    private Date uploadTime;
+}
@@ -0,0 +1,66 @@
+package com.ltqtest.springbootquickstart.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * 待审核预约列表项（预约与用户信息由一条关联查询直接构造）
+ */
+@Data
+@NoArgsConstructor
+public class PendingAppointmentView {
+
+    // 用户没有头像时使用的默认头像
+    private static final String DEFAULT_AVATAR = "https://example.com/u1.jpg";
+
+    private Long id; // 预约ID
+
+    private String date; // 预约日期
+
+    private String startTime; // 开始时间
+
+    private String endTime; // 结束时间
+
+    private String topic; // 咨询主题
+
+    private String remark; // 备注说明
+
+    private String status; // 预约状态
+
+    private UserBrief user; // 预约用户
+
+    /**
+     * JPQL构造表达式使用，用户不存在时关联字段为null
+     */
+    public PendingAppointmentView(Long id, LocalDate date, LocalTime startTime, LocalTime endTime,
+                                  String topic, String remark, String status, Integer appointmentUserId,
+                                  Integer userId, String realName, String username, String imageUrl) {
+        this.id = id;
+        this.date = date.toString();
+        this.startTime = startTime.toString();
+        this.endTime = endTime.toString();
+        this.topic = topic;
+        this.remark = remark;
+        this.status = status;
+        if (userId != null) {
+            this.user = new UserBrief(userId, realName != null ? realName : username,
+                    imageUrl != null ? imageUrl : DEFAULT_AVATAR);
+        } else {
+            // 如果用户不存在，仍然返回基本信息，但用户名为空
+            this.user = new UserBrief(appointmentUserId, "未知用户", DEFAULT_AVATAR);
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class UserBrief {
+        private Integer id; // 用户ID
+        private String name; // 用户姓名（无真实姓名时为用户名）
+        private String avatar; // 头像
+    }
+}
@@ -34,7 +34,7 @@ public class Purchase {
     private Double totalPrice;
     
     @Column(name = "status", columnDefinition = "TINYINT default 1")
-    private Integer status = 1; // 1-待付款，2-已付款，3-已发货，4-已完成，5-已取消
+    private Integer status = 1; // 1-待付款，2-已付款，3-已发货，4-已完成，5-已取消，8-已付款库存不足待退款
     
     @CreatedDate
     @Column(name = "create_time")
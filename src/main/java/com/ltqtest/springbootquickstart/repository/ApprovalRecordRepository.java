@@ -13,4 +13,7 @@ public interface ApprovalRecordRepository extends JpaRepository<ApprovalRecord,
     
     // 根据审批人ID查询审批记录
     List<ApprovalRecord> findByApproverId(Integer approverId);
+    
+    // 判断审批人是否审批过该申请
+    boolean existsByApplicationIdAndApproverId(Integer applicationId, Integer approverId);
 }
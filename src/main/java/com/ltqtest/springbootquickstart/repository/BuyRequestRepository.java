@@ -1,9 +1,11 @@
 package com.ltqtest.springbootquickstart.repository;
 
 import com.ltqtest.springbootquickstart.entity.BuyRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -12,12 +14,30 @@ import java.util.List;
 public interface BuyRequestRepository extends JpaRepository<BuyRequest, Integer> {
     
     /**
-     * 根据关键字搜索求购需求
-     * @param keyword 搜索关键字
-     * @return 匹配的求购需求列表
+     * 按创建时间降序游标分页查询求购需求（创建时间相同时按ID降序）
+     * @param lastCreateTime 上一页最后一条的创建时间，为空时查询第一页
+     * @param lastId 上一页最后一条的求购ID
+     * @param pageable 分页（只使用条数）
+     * @return 求购需求列表
+     */
+    @Query("SELECT b FROM BuyRequest b WHERE :lastCreateTime IS NULL OR b.createTime < :lastCreateTime " +
+           "OR (b.createTime = :lastCreateTime AND b.buyRequestId < :lastId) " +
+           "ORDER BY b.createTime DESC, b.buyRequestId DESC")
+    List<BuyRequest> findPageByCreateTimeDesc(@Param("lastCreateTime") Date lastCreateTime,
+                                              @Param("lastId") Integer lastId, Pageable pageable);
+
+    /**
+     * 按创建时间升序游标分页查询求购需求（创建时间相同时按ID升序）
+     * @param lastCreateTime 上一页最后一条的创建时间，为空时查询第一页
+     * @param lastId 上一页最后一条的求购ID
+     * @param pageable 分页（只使用条数）
+     * @return 求购需求列表
      */
-    @Query("SELECT b FROM BuyRequest b WHERE b.title LIKE %:keyword% OR b.content LIKE %:keyword%")
-    List<BuyRequest> searchByKeyword(@Param("keyword") String keyword);
+    @Query("SELECT b FROM BuyRequest b WHERE :lastCreateTime IS NULL OR b.createTime > :lastCreateTime " +
+           "OR (b.createTime = :lastCreateTime AND b.buyRequestId > :lastId) " +
+           "ORDER BY b.createTime ASC, b.buyRequestId ASC")
+    List<BuyRequest> findPageByCreateTimeAsc(@Param("lastCreateTime") Date lastCreateTime,
+                                             @Param("lastId") Integer lastId, Pageable pageable);
     
     /**
      * 按创建时间降序查询所有求购需求
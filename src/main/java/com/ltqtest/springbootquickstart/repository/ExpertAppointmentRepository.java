@@ -1,9 +1,13 @@
 package com.ltqtest.springbootquickstart.repository;
 
+import com.ltqtest.springbootquickstart.entity.AppointmentScheduleView;
 import com.ltqtest.springbootquickstart.entity.ExpertAppointment;
+import com.ltqtest.springbootquickstart.entity.PendingAppointmentView;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDate;
 import java.util.List;
@@ -21,6 +25,9 @@ public interface ExpertAppointmentRepository extends JpaRepository<ExpertAppoint
     // 根据expertId、date和status列表查询预约记录
     List<ExpertAppointment> findByExpertIdAndDateAndStatusIn(Integer expertId, LocalDate date, List<String> statusList);
     
+    // 根据expertId、日期范围和status列表查询预约记录（走expert_id, date, status索引）
+    List<ExpertAppointment> findByExpertIdAndDateBetweenAndStatusIn(Integer expertId, LocalDate startDate, LocalDate endDate, List<String> statusList);
+    
     // 根据expertId和status列表查询预约记录
     List<ExpertAppointment> findByExpertIdAndStatusIn(Integer expertId, List<String> statusList);
 
@@ -28,4 +35,25 @@ public interface ExpertAppointmentRepository extends JpaRepository<ExpertAppoint
     // 根据expertId、userId和date查询预约记录
     Optional<ExpertAppointment> findByExpertIdAndUserIdAndDate(Integer expertId, Integer userId, LocalDate date);
     Optional<ExpertAppointment> findByAppointmentId(Long appointmentId);
+
+    // 分页查询专家某状态的预约及预约用户信息（一条关联查询，避免逐条查询用户）
+    @Query(value = "SELECT new com.ltqtest.springbootquickstart.entity.PendingAppointmentView(" +
+                   "a.appointmentId, a.date, a.startTime, a.endTime, a.topic, a.remark, a.status, a.userId, " +
+                   "u.userId, u.realName, u.username, u.imageUrl) " +
+                   "FROM ExpertAppointment a LEFT JOIN a.user u " +
+                   "WHERE a.expertId = :expertId AND a.status = :status",
+           countQuery = "SELECT COUNT(a) FROM ExpertAppointment a WHERE a.expertId = :expertId AND a.status = :status")
+    Page<PendingAppointmentView> findPendingViews(@Param("expertId") Integer expertId,
+                                                  @Param("status") String status,
+                                                  Pageable pageable);
+
+    // 查询专家的预约日程及预约用户姓名，date为空时不限日期
+    @Query("SELECT new com.ltqtest.springbootquickstart.entity.AppointmentScheduleView(" +
+           "a.appointmentId, a.date, a.startTime, a.endTime, a.topic, a.status, u.realName, u.username) " +
+           "FROM ExpertAppointment a LEFT JOIN a.user u " +
+           "WHERE a.expertId = :expertId AND a.status IN :statusList " +
+           "AND (:date IS NULL OR a.date = :date)")
+    List<AppointmentScheduleView> findScheduleViews(@Param("expertId") Integer expertId,
+                                                    @Param("date") LocalDate date,
+                                                    @Param("statusList") List<String> statusList);
 }
@@ -1,7 +1,11 @@
 package com.ltqtest.springbootquickstart.repository;
 
 import com.ltqtest.springbootquickstart.entity.Expert;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 import java.util.Optional;
@@ -16,4 +20,9 @@ public interface ExpertRepository extends JpaRepository<Expert, Integer> {
     
     // 根据专家ID查询专家
     Optional<Expert> findByExpertId(Integer expertId);
+
+    // 根据专家ID查询专家并加行锁（SELECT ... FOR UPDATE），用于串行化同一专家的预约
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT e FROM Expert e WHERE e.expertId = :expertId")
+    Optional<Expert> findByIdForUpdate(@Param("expertId") Integer expertId);
 }
@@ -1,9 +1,13 @@
 package com.ltqtest.springbootquickstart.repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.ltqtest.springbootquickstart.entity.ExpertUserChatRecord;
@@ -14,5 +18,24 @@ public interface ExpertUserChatRecordRepository extends JpaRepository<ExpertUser
     List<ExpertUserChatRecord> findByExpertIdAndUserId(Integer expert_Id, Integer user_Id);
 
     Optional<ExpertUserChatRecord> findByEuChatId(Long euChatId);
+
+    // 查询某专家最近的AI自动回答记录（用于预热AI回答缓存）
+    List<ExpertUserChatRecord> findByExpertIdAndAiGeneratedTrueAndAnswerIsNotNullOrderByEuChatIdDesc(Integer expertId, Pageable pageable);
+
+    // 查询会话最近的记录（按ID倒序）
+    List<ExpertUserChatRecord> findByExpertIdAndUserIdOrderByEuChatIdDesc(Integer expertId, Integer userId, Pageable pageable);
+
+    // 查询会话中某条记录之前的记录（按ID倒序），用于向前翻页
+    List<ExpertUserChatRecord> findByExpertIdAndUserIdAndEuChatIdLessThanOrderByEuChatIdDesc(Integer expertId, Integer userId, Long beforeId, Pageable pageable);
+
+    // 增量同步：ID大于afterId的新记录，以及since之后有更新（如专家回答）的记录，按ID升序
+    @Query("SELECT r FROM ExpertUserChatRecord r WHERE r.expertId = :expertId AND r.userId = :userId " +
+           "AND (r.euChatId > :afterId OR (:since IS NOT NULL AND r.sendTime > :since)) " +
+           "ORDER BY r.euChatId ASC")
+    List<ExpertUserChatRecord> findChanges(@Param("expertId") Integer expertId,
+                                           @Param("userId") Integer userId,
+                                           @Param("afterId") Long afterId,
+                                           @Param("since") LocalDateTime since,
+                                           Pageable pageable);
     
 }
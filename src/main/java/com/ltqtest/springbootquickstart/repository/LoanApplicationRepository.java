@@ -1,10 +1,20 @@
 package com.ltqtest.springbootquickstart.repository;
 
 import com.ltqtest.springbootquickstart.entity.LoanApplication;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface LoanApplicationRepository extends JpaRepository<LoanApplication, Integer> {
@@ -16,4 +26,64 @@ public interface LoanApplicationRepository extends JpaRepository<LoanApplication
     
     // 根据状态查询贷款申请
     List<LoanApplication> findByStatus(Integer status);
-}
\ No newline at end of file
+
+    // 判断用户是否有贷款申请
+    boolean existsByUserId(Integer userId);
+
+    // 根据ID查询贷款申请并加行锁（SELECT ... FOR UPDATE），用于串行化同一笔贷款的还款
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT la FROM LoanApplication la WHERE la.applicationId = :applicationId")
+    Optional<LoanApplication> findByIdForUpdate(@Param("applicationId") Integer applicationId);
+
+    // 批量将贷款申请标记为已逾期（状态码6），已还款（5）和已逾期的申请不受影响
+    @Modifying
+    @Transactional
+    @Query("UPDATE LoanApplication la SET la.status = 6 WHERE la.applicationId IN :applicationIds AND la.status <> 5 AND la.status <> 6")
+    int markOverdue(@Param("applicationIds") Collection<Integer> applicationIds);
+
+    // 根据状态查询贷款申请，同时抓取产品、用户和状态，按申请时间排序
+    @Query("SELECT la FROM LoanApplication la " +
+           "JOIN FETCH la.financialProduct LEFT JOIN FETCH la.user LEFT JOIN FETCH la.loanStatus " +
+           "WHERE la.status = :status ORDER BY la.applyTime ASC, la.applicationId ASC")
+    List<LoanApplication> findByStatusFetchProduct(@Param("status") Integer status);
+
+    // 审批队列：按申请时间游标分页查询未被领取、领取已过期或由当前审批人领取的申请，依赖 loan_application(status, applyTime) 索引
+    @Query("SELECT la FROM LoanApplication la " +
+           "JOIN FETCH la.financialProduct LEFT JOIN FETCH la.user LEFT JOIN FETCH la.loanStatus " +
+           "WHERE la.status = :status " +
+           "AND (la.claimedBy IS NULL OR la.claimExpireTime < :now OR la.claimedBy = :approverId) " +
+           "AND (:lastApplyTime IS NULL OR la.applyTime > :lastApplyTime " +
+           "OR (la.applyTime = :lastApplyTime AND la.applicationId > :lastApplicationId)) " +
+           "ORDER BY la.applyTime ASC, la.applicationId ASC")
+    List<LoanApplication> findApprovalQueue(@Param("status") Integer status,
+                                            @Param("approverId") Integer approverId,
+                                            @Param("now") Date now,
+                                            @Param("lastApplyTime") Date lastApplyTime,
+                                            @Param("lastApplicationId") Integer lastApplicationId,
+                                            Pageable pageable);
+
+    // 领取待审批申请：未被领取、领取已过期或由自己领取（续期）时才能成功
+    @Modifying
+    @Transactional
+    @Query("UPDATE LoanApplication la SET la.claimedBy = :approverId, la.claimExpireTime = :expireTime " +
+           "WHERE la.applicationId = :applicationId AND la.status = 1 " +
+           "AND (la.claimedBy IS NULL OR la.claimExpireTime < :now OR la.claimedBy = :approverId)")
+    int claim(@Param("applicationId") Integer applicationId,
+              @Param("approverId") Integer approverId,
+              @Param("now") Date now,
+              @Param("expireTime") Date expireTime);
+
+    // 释放自己领取的申请
+    @Modifying
+    @Transactional
+    @Query("UPDATE LoanApplication la SET la.claimedBy = NULL, la.claimExpireTime = NULL " +
+           "WHERE la.applicationId = :applicationId AND la.claimedBy = :approverId")
+    int releaseClaim(@Param("applicationId") Integer applicationId, @Param("approverId") Integer approverId);
+
+    // 审批时按原状态条件更新（1已提交或3已审核，且与目标状态不同），并清除领取信息，防止重复审批
+    @Modifying
+    @Transactional
+    @Query("UPDATE LoanApplication la SET la.status = :toStatus, la.claimedBy = NULL, la.claimExpireTime = NULL " +
+           "WHERE la.applicationId = :applicationId AND la.status IN (1, 3) AND la.status <> :toStatus")
+    int updateStatusForApproval(@Param("applicationId") Integer applicationId, @Param("toStatus") Integer toStatus);
+}
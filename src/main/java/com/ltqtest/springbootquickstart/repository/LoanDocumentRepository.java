@@ -0,0 +1,20 @@
+package com.ltqtest.springbootquickstart.repository;
+
+import com.ltqtest.springbootquickstart.entity.LoanDocument;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface LoanDocumentRepository extends JpaRepository<LoanDocument, Integer> {
+    // 根据贷款申请ID查询申请材料
+    List<LoanDocument> findByApplicationIdOrderByDocumentIdAsc(Integer applicationId);
+
+    // 查询给定哈希中仍被材料记录引用的部分（用于清理未引用的文件）
+    @Query("SELECT DISTINCT d.sha256 FROM LoanDocument d WHERE d.sha256 IN :hashes")
+    List<String> findReferencedSha256In(@Param("hashes") Collection<String> hashes);
+}
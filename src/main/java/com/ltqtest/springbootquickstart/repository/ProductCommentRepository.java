@@ -1,9 +1,17 @@
 package com.ltqtest.springbootquickstart.repository;
 
 import com.ltqtest.springbootquickstart.entity.ProductComment;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -24,4 +32,62 @@ public interface ProductCommentRepository extends JpaRepository<ProductComment,
     
     // 根据商品ID查询rootCommentId为null的顶级评论
     List<ProductComment> findByProductIdAndRootCommentIdIsNull(Integer productId);
-}
\ No newline at end of file
+
+    // 分页查询商品的顶级评论
+    Page<ProductComment> findByProductIdAndRootCommentIdIsNull(Integer productId, Pageable pageable);
+
+    // 按父评论分组统计回复数，返回 [rootCommentId, count]
+    @Query("SELECT c.rootCommentId, COUNT(c) FROM ProductComment c " +
+           "WHERE c.productId = :productId AND c.rootCommentId IN :rootIds GROUP BY c.rootCommentId")
+    List<Object[]> countRepliesByRootIds(@Param("productId") Integer productId, @Param("rootIds") Collection<Long> rootIds);
+
+    // 一次查询多个父评论各自最早的limit条回复，按父评论、发送时间排序
+    @Query("SELECT c FROM ProductComment c WHERE c.productCommentId IN (" +
+           "SELECT t.id FROM (SELECT r.productCommentId AS id, " +
+           "ROW_NUMBER() OVER (PARTITION BY r.rootCommentId ORDER BY r.sendTime ASC, r.productCommentId ASC) AS rn " +
+           "FROM ProductComment r WHERE r.productId = :productId AND r.rootCommentId IN :rootIds) AS t " +
+           "WHERE t.rn <= :limit) " +
+           "ORDER BY c.rootCommentId ASC, c.sendTime ASC, c.productCommentId ASC")
+    List<ProductComment> findReplyPreviews(@Param("productId") Integer productId,
+                                           @Param("rootIds") Collection<Long> rootIds,
+                                           @Param("limit") long limit);
+
+    // 只查询评论的点赞数，评论不存在时返回空
+    @Query("SELECT COALESCE(c.commentLikeCount, 0) FROM ProductComment c WHERE c.productCommentId = :productCommentId")
+    Optional<Long> findLikeCountById(@Param("productCommentId") Long productCommentId);
+
+    // 在数据库中原子地累加点赞数（不小于0），避免读-改-写丢失并发更新
+    @Modifying
+    @Transactional
+    @Query("UPDATE ProductComment c SET c.commentLikeCount = " +
+           "CASE WHEN COALESCE(c.commentLikeCount, 0) + :delta < 0 THEN 0 ELSE COALESCE(c.commentLikeCount, 0) + :delta END " +
+           "WHERE c.productCommentId = :productCommentId")
+    int addLikeCount(@Param("productCommentId") Long productCommentId, @Param("delta") long delta);
+
+    // 只查询以给定评论为父评论的子评论ID，用于按层收集待删除的评论树
+    @Query("SELECT c.productCommentId FROM ProductComment c WHERE c.rootCommentId IN :parentIds")
+    List<Long> findIdsByRootCommentIdIn(@Param("parentIds") Collection<Long> parentIds);
+
+    // 按ID批量删除评论
+    @Modifying
+    @Query("DELETE FROM ProductComment c WHERE c.productCommentId IN :ids")
+    int deleteByProductCommentIdIn(@Param("ids") Collection<Long> ids);
+
+    // 按商品分组统计评论数、点赞总数和最新评论时间，返回 [productId, count, likes, latestSendTime]
+    @Query("SELECT c.productId, COUNT(c), COALESCE(SUM(c.commentLikeCount), 0), MAX(c.sendTime) " +
+           "FROM ProductComment c GROUP BY c.productId")
+    List<Object[]> aggregateByProduct();
+
+    // 按商品分组统计给定评论的评论数、点赞总数和最晚评论时间，返回 [productId, count, likes, latestSendTime]
+    @Query("SELECT c.productId, COUNT(c), COALESCE(SUM(c.commentLikeCount), 0), MAX(c.sendTime) " +
+           "FROM ProductComment c WHERE c.productCommentId IN :ids GROUP BY c.productId")
+    List<Object[]> aggregateByIds(@Param("ids") Collection<Long> ids);
+
+    // 查询商品的最新评论时间
+    @Query("SELECT MAX(c.sendTime) FROM ProductComment c WHERE c.productId = :productId")
+    LocalDateTime findLatestSendTime(@Param("productId") Integer productId);
+
+    // 查询评论所属的商品，返回 [productCommentId, productId]
+    @Query("SELECT c.productCommentId, c.productId FROM ProductComment c WHERE c.productCommentId IN :ids")
+    List<Object[]> findProductIdsByIds(@Param("ids") Collection<Long> ids);
+}
@@ -1,8 +1,13 @@
 package com.ltqtest.springbootquickstart.repository;
 import com.ltqtest.springbootquickstart.entity.Product;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -15,4 +20,59 @@ public interface ProductRepository extends JpaRepository<Product, Integer> {
     // 根据商品ID查询商品
     Product findByProductId(Integer productId);
     List<Product> findByUserId(Integer userId);
+    
+    /**
+     * 按最新上架（商品ID倒序）游标分页查询指定状态的商品
+     * @param status 商品状态
+     * @param lastProductId 上一页最后一条商品ID，为空时查询第一页
+     * @param pageable 只使用其中的每页条数
+     * @return 商品列表
+     */
+    @Query("SELECT p FROM Product p WHERE p.status = :status " +
+           "AND (:lastProductId IS NULL OR p.productId < :lastProductId) " +
+           "ORDER BY p.productId DESC")
+    List<Product> findFeedByNewest(@Param("status") Integer status,
+                                   @Param("lastProductId") Integer lastProductId,
+                                   Pageable pageable);
+    
+    /**
+     * 按销量倒序游标分页查询指定状态的商品，依赖 product(status, salesVolume, product_id) 索引
+     * @param status 商品状态
+     * @param lastSalesVolume 上一页最后一条商品的销量，为空时查询第一页
+     * @param lastProductId 上一页最后一条商品ID
+     * @param pageable 只使用其中的每页条数
+     * @return 商品列表
+     */
+    @Query("SELECT p FROM Product p WHERE p.status = :status " +
+           "AND (:lastSalesVolume IS NULL OR p.salesVolume < :lastSalesVolume " +
+           "OR (p.salesVolume = :lastSalesVolume AND p.productId < :lastProductId)) " +
+           "ORDER BY p.salesVolume DESC, p.productId DESC")
+    List<Product> findFeedBySales(@Param("status") Integer status,
+                                  @Param("lastSalesVolume") Integer lastSalesVolume,
+                                  @Param("lastProductId") Integer lastProductId,
+                                  Pageable pageable);
+    
+    /**
+     * 扣减库存并累加销量，仅在库存充足时生效
+     * @param productId 商品ID
+     * @param amount 数量
+     * @return 受影响的行数，0表示库存不足或商品不存在
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Product p SET p.surplus = p.surplus - :amount, p.salesVolume = p.salesVolume + :amount " +
+           "WHERE p.productId = :productId AND p.surplus >= :amount")
+    int deductStock(@Param("productId") Integer productId, @Param("amount") Integer amount);
+    
+    /**
+     * 回补库存并扣减销量（取消订单、退货时使用）
+     * @param productId 商品ID
+     * @param amount 数量
+     * @return 受影响的行数
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Product p SET p.surplus = p.surplus + :amount, p.salesVolume = p.salesVolume - :amount " +
+           "WHERE p.productId = :productId")
+    int restoreStock(@Param("productId") Integer productId, @Param("amount") Integer amount);
 }
\ No newline at end of file
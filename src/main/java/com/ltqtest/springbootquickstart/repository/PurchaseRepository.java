@@ -1,9 +1,16 @@
 package com.ltqtest.springbootquickstart.repository;
 
 import com.ltqtest.springbootquickstart.entity.Purchase;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -30,4 +37,57 @@ public interface PurchaseRepository extends JpaRepository<Purchase, Integer> {
      * @return 购买记录列表
      */
     List<Purchase> findByUserIdAndStatus(Integer userId, Integer status);
+    
+    /**
+     * 查询某农户名下商品的购买记录（连接商品表，按创建时间倒序分页）
+     * 依赖 purchase(product_id, status, create_time) 复合索引
+     * @param farmerId 农户ID（product.user_id）
+     * @param status 订单状态，为空时不过滤
+     * @param productStatus 商品状态，为空时不过滤
+     * @param pageable 分页参数
+     * @return 每行为 [Purchase, Product]
+     */
+    @Query("SELECT pu, p FROM Purchase pu JOIN Product p ON p.productId = pu.productId " +
+           "WHERE p.userId = :farmerId " +
+           "AND (:status IS NULL OR pu.status = :status) " +
+           "AND (:productStatus IS NULL OR p.status = :productStatus) " +
+           "ORDER BY pu.createTime DESC, pu.purchaseId DESC")
+    List<Object[]> findFarmerSales(@Param("farmerId") Integer farmerId,
+                                   @Param("status") Integer status,
+                                   @Param("productStatus") Integer productStatus,
+                                   Pageable pageable);
+    
+    /**
+     * 批量修改某商品指定状态的购买记录状态
+     * @param productId 商品ID
+     * @param fromStatus 原状态
+     * @param toStatus 目标状态
+     * @param updateTime 更新时间
+     * @return 受影响的记录数
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Purchase pu SET pu.status = :toStatus, pu.updateTime = :updateTime " +
+           "WHERE pu.productId = :productId AND pu.status = :fromStatus")
+    int updateStatusByProductId(@Param("productId") Integer productId,
+                                @Param("fromStatus") Integer fromStatus,
+                                @Param("toStatus") Integer toStatus,
+                                @Param("updateTime") LocalDateTime updateTime);
+    
+    /**
+     * 按当前状态条件修改单条购买记录状态，用于并发下的状态流转校验
+     * @param purchaseId 购买记录ID
+     * @param fromStatuses 允许的原状态
+     * @param toStatus 目标状态
+     * @param updateTime 更新时间
+     * @return 受影响的记录数，0表示记录不存在或状态已变化
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Purchase pu SET pu.status = :toStatus, pu.updateTime = :updateTime " +
+           "WHERE pu.purchaseId = :purchaseId AND pu.status IN :fromStatuses")
+    int updateStatusByPurchaseId(@Param("purchaseId") Integer purchaseId,
+                                 @Param("fromStatuses") Collection<Integer> fromStatuses,
+                                 @Param("toStatus") Integer toStatus,
+                                 @Param("updateTime") LocalDateTime updateTime);
 }
\ No newline at end of file
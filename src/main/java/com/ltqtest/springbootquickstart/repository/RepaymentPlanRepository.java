@@ -1,8 +1,16 @@
 package com.ltqtest.springbootquickstart.repository;
 
 import com.ltqtest.springbootquickstart.entity.RepaymentPlan;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -17,5 +25,45 @@ public interface RepaymentPlanRepository extends JpaRepository<RepaymentPlan, In
      * @return 还款计划列表
      */
     List<RepaymentPlan> findByApplicationId(Integer applicationId);
-}
 
+    /**
+     * 根据贷款申请ID查询还款计划，按到期日期升序（还款时先冲抵最早到期的计划）
+     * @param applicationId 贷款申请ID
+     * @return 还款计划列表
+     */
+    List<RepaymentPlan> findByApplicationIdOrderByDueDateAscPlanIdAsc(Integer applicationId);
+
+    /**
+     * 一次查询某用户所有贷款申请的还款计划，只取展示需要的列，返回[applicationId, dueDate, remainingAmount]
+     * @param userId 用户ID
+     * @return 还款计划
+     */
+    @Query("SELECT p.applicationId, p.dueDate, p.remainingAmount FROM RepaymentPlan p " +
+           "JOIN LoanApplication la ON la.applicationId = p.applicationId " +
+           "WHERE la.userId = :userId ORDER BY p.applicationId ASC, p.dueDate ASC")
+    List<Object[]> findPlanViewsByUserId(@Param("userId") Integer userId);
+
+    /**
+     * 查询已到期但仍为“未还”状态的还款计划，返回[planId, applicationId]
+     * 使用状态等值条件，走(status, due_date)索引只扫描未还的计划，已还款和已逾期的历史计划不会被读取
+     * @param now 当前时间
+     * @param pageable 每批数量
+     * @return 计划ID与贷款申请ID
+     */
+    @Query("SELECT p.planId, p.applicationId FROM RepaymentPlan p " +
+           "WHERE p.status = '未还' AND p.dueDate < :now AND p.remainingAmount > 0 " +
+           "ORDER BY p.dueDate ASC, p.planId ASC")
+    List<Object[]> findOverdueCandidates(@Param("now") Date now, Pageable pageable);
+
+    /**
+     * 批量将还款计划标记为逾期
+     * @param planIds 计划ID
+     * @param updatedAt 更新时间
+     * @return 更新的行数
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE RepaymentPlan p SET p.status = '已逾期', p.updatedAt = :updatedAt " +
+           "WHERE p.planId IN :planIds AND p.remainingAmount > 0 AND p.status = '未还'")
+    int markOverdue(@Param("planIds") Collection<Integer> planIds, @Param("updatedAt") Date updatedAt);
+}
@@ -0,0 +1,386 @@
+package com.ltqtest.springbootquickstart.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.ltqtest.springbootquickstart.entity.ExpertUserChatRecord;
+import com.ltqtest.springbootquickstart.repository.ExpertUserChatRecordRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * AI问答回答缓存
+ * 第一层按归一化后的问题精确匹配；第二层对问题的字符二元组计算MinHash签名，
+ * 通过LSH分桶找到相似的历史问题，Jaccard相似度达到阈值且否定词、数字完全一致时直接复用其回答（默认关闭）。
+ * 缓存容量和过期时间可配置；配置了persist-expert-id时回答以AI回答标记写入聊天记录表（在独立线程中写入，
+ * 不占用OkHttp回调线程），并在启动时用于预热缓存
+ */
+@Service
+public class AiAnswerCacheService {
+
+    private static final Logger logger = Logger.getLogger(AiAnswerCacheService.class.getName());
+
+    // MinHash签名长度 = 分桶数 * 每桶行数
+    private static final int BANDS = 16;
+    private static final int ROWS = 4;
+    private static final int NUM_HASHES = BANDS * ROWS;
+    private static final long MERSENNE_PRIME = (1L << 31) - 1;
+
+    // 参与相似匹配的问题最少字符数，过短的问题只做精确匹配
+    private static final int MIN_SIMILAR_LENGTH = 4;
+
+    // 问题中需要去掉的标点和空白
+    private static final String STRIP_PATTERN = "[\\s\\p{P}\\p{S}]+";
+
+    // 否定词用字，相似匹配要求两个问题中的否定词和数字完全一致（如“可以用农药吗”与“不可以用农药吗”）
+    private static final String NEGATION_CHARS = "不没无别非未勿否莫";
+
+    // MinHash哈希函数参数，固定种子保证重启后签名一致
+    private static final long[] HASH_A = new long[NUM_HASHES];
+    private static final long[] HASH_B = new long[NUM_HASHES];
+
+    static {
+        Random random = new Random(20240601L);
+        for (int i = 0; i < NUM_HASHES; i++) {
+            HASH_A[i] = 1 + random.nextInt(Integer.MAX_VALUE - 1);
+            HASH_B[i] = random.nextInt(Integer.MAX_VALUE);
+        }
+    }
+
+    @Autowired
+    private ExpertUserChatRecordRepository expertUserChatRecordRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${deepseek.answer-cache.similarity-threshold:0}")
+    private double similarityThreshold;
+
+    // 用于保存AI回答的专家ID（需在专家表中存在），不配置时不持久化
+    @Value("${deepseek.answer-cache.persist-expert-id:#{null}}")
+    private Integer persistExpertId;
+
+    @Value("${deepseek.answer-cache.warmup-size:1000}")
+    private int warmupSize;
+
+    // 归一化问题 -> 缓存的回答
+    private final Cache<String, CachedAnswer> cache;
+
+    // LSH分桶：桶键 -> 归一化问题集合
+    private final Map<Long, Set<String>> buckets = new ConcurrentHashMap<>();
+
+    private final LongAdder exactHits = new LongAdder();
+    private final LongAdder similarHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    // 写入聊天记录的线程，put在OkHttp回调线程上调用，不能在其中执行数据库写入
+    private final ThreadPoolExecutor persistExecutor;
+
+    public AiAnswerCacheService(@Value("${deepseek.answer-cache.max-size:5000}") long maxSize,
+                                @Value("${deepseek.answer-cache.ttl-hours:24}") long ttlHours,
+                                @Value("${deepseek.answer-cache.persist-queue-size:1000}") int persistQueueSize) {
+        this.persistExecutor = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(persistQueueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "ai-answer-persist");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofHours(ttlHours))
+                .removalListener((String key, CachedAnswer value, RemovalCause cause) -> {
+                    // 同一问题被覆盖时签名不变，无需移出分桶
+                    if (key != null && value != null && cause != RemovalCause.REPLACED) {
+                        unindex(key, value);
+                    }
+                })
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        persistExecutor.shutdown();
+        try {
+            persistExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 启动时用已持久化的AI回答预热缓存
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (persistExpertId == null || warmupSize <= 0) {
+            return;
+        }
+        try {
+            List<ExpertUserChatRecord> records = expertUserChatRecordRepository
+                    .findByExpertIdAndAiGeneratedTrueAndAnswerIsNotNullOrderByEuChatIdDesc(persistExpertId, PageRequest.of(0, warmupSize));
+            for (ExpertUserChatRecord record : records) {
+                store(record.getQuestion(), record.getAnswer());
+            }
+            logger.info("AI回答缓存预热完成，共加载" + records.size() + "条");
+        } catch (Exception e) {
+            logger.warning("AI回答缓存预热失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 查询缓存的回答，先精确匹配再相似匹配
+     * @param question 问题
+     * @return 回答内容，未命中时返回null
+     */
+    public String lookup(String question) {
+        String key = normalize(question);
+        if (key.isEmpty()) {
+            misses.increment();
+            return null;
+        }
+        CachedAnswer exact = cache.getIfPresent(key);
+        if (exact != null) {
+            exactHits.increment();
+            return exact.answer;
+        }
+        CachedAnswer similar = findSimilar(key);
+        if (similar != null) {
+            similarHits.increment();
+            return similar.answer;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * 缓存新的回答，配置了persist-expert-id时同时异步写入聊天记录
+     * @param question 问题
+     * @param answer 回答内容
+     * @param userId 提问用户ID
+     */
+    public void put(String question, String answer, Integer userId) {
+        if (answer == null || answer.isEmpty()) {
+            return;
+        }
+        store(question, answer);
+        if (persistExpertId != null && userId != null) {
+            LocalDateTime sendTime = LocalDateTime.now();
+            try {
+                persistExecutor.execute(() -> persist(question, answer, userId, sendTime));
+            } catch (RejectedExecutionException e) {
+                logger.warning("AI回答记录写入队列已满，丢弃记录: userId=" + userId);
+            }
+        }
+    }
+
+    /**
+     * 获取缓存命中统计
+     * @return 精确命中、相似命中、未命中次数与当前条目数
+     */
+    public Map<String, Object> stats() {
+        long exact = exactHits.sum();
+        long similar = similarHits.sum();
+        long miss = misses.sum();
+        long total = exact + similar + miss;
+        Map<String, Object> data = new HashMap<>();
+        data.put("exactHitCount", exact);
+        data.put("similarHitCount", similar);
+        data.put("missCount", miss);
+        data.put("hitRate", total == 0 ? 0.0 : (double) (exact + similar) / total);
+        data.put("size", cache.estimatedSize());
+        return data;
+    }
+
+    /**
+     * 问题归一化：全角转半角、转小写、去掉空白和标点
+     * @param question 问题
+     * @return 归一化后的问题
+     */
+    public static String normalize(String question) {
+        if (question == null) {
+            return "";
+        }
+        String text = Normalizer.normalize(question, Normalizer.Form.NFKC).toLowerCase();
+        return text.replaceAll(STRIP_PATTERN, "");
+    }
+
+    // 以AI回答标记写入聊天记录
+    private void persist(String question, String answer, Integer userId, LocalDateTime sendTime) {
+        try {
+            ExpertUserChatRecord record = new ExpertUserChatRecord();
+            record.setExpertId(persistExpertId);
+            record.setUserId(userId);
+            record.setQuestion(truncate(question, 1000));
+            record.setAnswer(truncate(answer, 2000));
+            record.setSendTime(sendTime);
+            record.setAiGenerated(true);
+            expertUserChatRecordRepository.save(record);
+            eventPublisher.publishEvent(new ChatRecordEvent(record));
+        } catch (Exception e) {
+            logger.warning("保存AI回答记录失败: " + e.getMessage());
+        }
+    }
+
+    private void store(String question, String answer) {
+        String key = normalize(question);
+        if (key.isEmpty() || answer == null) {
+            return;
+        }
+        Set<Integer> shingles = shingles(key);
+        CachedAnswer entry = new CachedAnswer(answer, shingles, signature(shingles), guardTerms(key));
+        cache.put(key, entry);
+        if (key.length() >= MIN_SIMILAR_LENGTH) {
+            for (int band = 0; band < BANDS; band++) {
+                buckets.computeIfAbsent(bandKey(entry.signature, band), k -> ConcurrentHashMap.newKeySet()).add(key);
+            }
+        }
+    }
+
+    private void unindex(String key, CachedAnswer entry) {
+        if (cache.asMap().containsKey(key)) {
+            return;
+        }
+        for (int band = 0; band < BANDS; band++) {
+            buckets.computeIfPresent(bandKey(entry.signature, band), (k, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+
+    // 从同桶的候选问题中选出Jaccard相似度最高且达到阈值的回答
+    private CachedAnswer findSimilar(String key) {
+        if (similarityThreshold <= 0 || similarityThreshold > 1 || key.length() < MIN_SIMILAR_LENGTH) {
+            return null;
+        }
+        Set<Integer> shingles = shingles(key);
+        int[] signature = signature(shingles);
+        String guardTerms = guardTerms(key);
+
+        Set<String> candidates = new HashSet<>();
+        for (int band = 0; band < BANDS; band++) {
+            Set<String> keys = buckets.get(bandKey(signature, band));
+            if (keys != null) {
+                candidates.addAll(keys);
+            }
+        }
+
+        CachedAnswer best = null;
+        double bestScore = similarityThreshold;
+        for (String candidate : candidates) {
+            CachedAnswer entry = cache.asMap().get(candidate);
+            if (entry == null || !entry.guardTerms.equals(guardTerms)) {
+                continue;
+            }
+            double score = jaccard(shingles, entry.shingles);
+            if (score >= bestScore) {
+                best = entry;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    // 问题中依次出现的否定词和数字，二元组相似度对一个字的差异不敏感，这部分必须完全一致才算相似
+    private static String guardTerms(String key) {
+        StringBuilder terms = new StringBuilder();
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (NEGATION_CHARS.indexOf(c) >= 0 || Character.isDigit(c)) {
+                terms.append(c);
+            }
+        }
+        return terms.toString();
+    }
+
+    // 字符二元组集合（以哈希值表示）
+    private static Set<Integer> shingles(String text) {
+        Set<Integer> shingles = new HashSet<>();
+        if (text.length() < 2) {
+            shingles.add(text.hashCode());
+            return shingles;
+        }
+        for (int i = 0; i + 2 <= text.length(); i++) {
+            shingles.add(text.substring(i, i + 2).hashCode());
+        }
+        return shingles;
+    }
+
+    private static int[] signature(Set<Integer> shingles) {
+        int[] signature = new int[NUM_HASHES];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (Integer shingle : shingles) {
+            long x = shingle & 0xffffffffL;
+            for (int i = 0; i < NUM_HASHES; i++) {
+                int h = (int) ((HASH_A[i] * x + HASH_B[i]) % MERSENNE_PRIME);
+                if (h < signature[i]) {
+                    signature[i] = h;
+                }
+            }
+        }
+        return signature;
+    }
+
+    private static long bandKey(int[] signature, int band) {
+        int hash = Arrays.hashCode(Arrays.copyOfRange(signature, band * ROWS, (band + 1) * ROWS));
+        return ((long) band << 32) | (hash & 0xffffffffL);
+    }
+
+    private static double jaccard(Set<Integer> a, Set<Integer> b) {
+        Set<Integer> smaller = a.size() <= b.size() ? a : b;
+        Set<Integer> larger = smaller == a ? b : a;
+        int intersection = 0;
+        for (Integer value : smaller) {
+            if (larger.contains(value)) {
+                intersection++;
+            }
+        }
+        int union = a.size() + b.size() - intersection;
+        return union == 0 ? 0.0 : (double) intersection / union;
+    }
+
+    private static String truncate(String text, int maxLength) {
+        return text != null && text.length() > maxLength ? text.substring(0, maxLength) : text;
+    }
+
+    // 缓存条目：回答内容及问题的二元组集合、MinHash签名和否定词/数字
+    private static class CachedAnswer {
+        private final String answer;
+        private final Set<Integer> shingles;
+        private final int[] signature;
+        private final String guardTerms;
+
+        private CachedAnswer(String answer, Set<Integer> shingles, int[] signature, String guardTerms) {
+            this.answer = answer;
+            this.shingles = shingles;
+            this.signature = signature;
+            this.guardTerms = guardTerms;
+        }
+    }
+}
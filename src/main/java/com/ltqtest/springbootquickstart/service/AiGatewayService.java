@@ -0,0 +1,327 @@
+package com.ltqtest.springbootquickstart.service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.ltqtest.springbootquickstart.entity.DeepseekRequest;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * AI问答网关服务
+ * 基于OkHttp连接池调用DeepSeek对话接口，请求异步执行不占用Tomcat工作线程；
+ * 连接、读取和整体超时可配置，并通过信号量限制同时进行的调用数，超出时直接拒绝而不是排队等待。
+ * 接口地址可配置，测试时可以指向本地的桩服务；未配置API Key时AI功能关闭，调用直接以DisabledException结束
+ */
+@Service
+public class AiGatewayService {
+
+    private static final Logger logger = Logger.getLogger(AiGatewayService.class.getName());
+
+    // 系统角色提示，设定专家身份
+    public static final String SYSTEM_PROMPT = "你是一个农业专家";
+
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+    // SSE流中表示结束的数据
+    private static final String STREAM_DONE = "[DONE]";
+
+    private final Gson gson = new Gson();
+
+    private final String apiUrl;
+    private final String apiKey;
+    private final String model;
+
+    // 普通调用客户端，整体超时较短
+    private final OkHttpClient client;
+    // 流式调用客户端，与普通客户端共用连接池和调度器，整体超时更长
+    private final OkHttpClient streamClient;
+
+    // 同时进行的AI调用数
+    private final Semaphore permits;
+
+    public AiGatewayService(@Value("${deepseek.api-url:https://api.deepseek.com/v1/chat/completions}") String apiUrl,
+                            @Value("${deepseek.api-key:}") String apiKey,
+                            @Value("${deepseek.model:deepseek-chat}") String model,
+                            @Value("${deepseek.connect-timeout-ms:5000}") long connectTimeoutMs,
+                            @Value("${deepseek.read-timeout-ms:60000}") long readTimeoutMs,
+                            @Value("${deepseek.call-timeout-ms:90000}") long callTimeoutMs,
+                            @Value("${deepseek.stream-timeout-ms:300000}") long streamTimeoutMs,
+                            @Value("${deepseek.max-concurrent:16}") int maxConcurrent,
+                            @Value("${deepseek.max-idle-connections:8}") int maxIdleConnections,
+                            @Value("${deepseek.keep-alive-seconds:300}") long keepAliveSeconds) {
+        this.apiUrl = apiUrl;
+        this.apiKey = apiKey;
+        this.model = model;
+        this.permits = new Semaphore(maxConcurrent);
+        if (!isEnabled()) {
+            logger.warning("未配置DEEPSEEK_API_KEY，AI问答功能已关闭");
+        }
+
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxConcurrent);
+        dispatcher.setMaxRequestsPerHost(maxConcurrent);
+
+        this.client = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveSeconds, TimeUnit.SECONDS))
+                .dispatcher(dispatcher)
+                .connectTimeout(connectTimeoutMs, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeoutMs, TimeUnit.MILLISECONDS)
+                .writeTimeout(connectTimeoutMs, TimeUnit.MILLISECONDS)
+                .callTimeout(callTimeoutMs, TimeUnit.MILLISECONDS)
+                .retryOnConnectionFailure(true)
+                .build();
+        this.streamClient = client.newBuilder()
+                .callTimeout(streamTimeoutMs, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+    }
+
+    /**
+     * 是否已配置API Key
+     * @return 未配置时AI问答功能关闭
+     */
+    public boolean isEnabled() {
+        return apiKey != null && !apiKey.isBlank();
+    }
+
+    /**
+     * 异步提问
+     * @param question 问题
+     * @return DeepSeek接口返回的原始响应体；未配置API Key时以DisabledException结束，并发数已满时以BusyException结束
+     */
+    public CompletableFuture<String> ask(String question) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        if (!isEnabled()) {
+            future.completeExceptionally(new DisabledException());
+            return future;
+        }
+        if (!permits.tryAcquire()) {
+            future.completeExceptionally(new BusyException());
+            return future;
+        }
+        client.newCall(buildRequest(question, false)).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                permits.release();
+                logger.warning("调用DeepSeek接口失败: " + e.getMessage());
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (ResponseBody body = response.body()) {
+                    if (!response.isSuccessful()) {
+                        future.completeExceptionally(new IOException("DeepSeek接口返回状态码" + response.code()));
+                        return;
+                    }
+                    future.complete(body != null ? body.string() : "");
+                } catch (IOException e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    permits.release();
+                }
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 流式提问，模型每生成一段内容就以token事件推送给客户端，结束时推送done事件（数据为完整回答）
+     * 客户端断开或超时后会取消上游请求
+     * @param question 问题
+     * @param emitter SSE发送器
+     * @param onAnswer 完整回答生成后的回调（如写入缓存），可为null
+     * @throws DisabledException 未配置API Key
+     * @throws BusyException 并发数已满
+     */
+    public void stream(String question, SseEmitter emitter, Consumer<String> onAnswer) {
+        if (!isEnabled()) {
+            throw new DisabledException();
+        }
+        if (!permits.tryAcquire()) {
+            throw new BusyException();
+        }
+        Call call = streamClient.newCall(buildRequest(question, true));
+        emitter.onTimeout(call::cancel);
+        emitter.onError(e -> call.cancel());
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                permits.release();
+                if (!call.isCanceled()) {
+                    logger.warning("调用DeepSeek流式接口失败: " + e.getMessage());
+                    sendErrorAndComplete(emitter, "AI服务调用失败");
+                }
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (ResponseBody body = response.body()) {
+                    if (!response.isSuccessful() || body == null) {
+                        sendErrorAndComplete(emitter, "AI服务返回错误，状态码" + response.code());
+                        return;
+                    }
+                    StringBuilder answer = new StringBuilder();
+                    BufferedSource source = body.source();
+                    String line;
+                    while ((line = source.readUtf8Line()) != null) {
+                        if (!line.startsWith("data:")) {
+                            continue;
+                        }
+                        String data = line.substring(5).trim();
+                        if (STREAM_DONE.equals(data)) {
+                            break;
+                        }
+                        String token = extractDelta(data);
+                        if (token != null && !token.isEmpty()) {
+                            answer.append(token);
+                            emitter.send(SseEmitter.event().name("token").data(token));
+                        }
+                    }
+                    if (onAnswer != null && answer.length() > 0) {
+                        onAnswer.accept(answer.toString());
+                    }
+                    emitter.send(SseEmitter.event().name("done").data(answer.toString()));
+                    emitter.complete();
+                } catch (IOException | IllegalStateException e) {
+                    // 客户端已断开或上游连接异常，停止读取
+                    call.cancel();
+                    emitter.completeWithError(e);
+                } finally {
+                    permits.release();
+                }
+            }
+        });
+    }
+
+    /**
+     * 从DeepSeek非流式响应中提取回答内容
+     * @param responseBody 原始响应体
+     * @return 回答内容，解析失败时返回null
+     */
+    public String extractAnswer(String responseBody) {
+        try {
+            JsonObject root = JsonParser.parseString(responseBody).getAsJsonObject();
+            JsonElement content = root.getAsJsonArray("choices").get(0).getAsJsonObject()
+                    .getAsJsonObject("message").get("content");
+            return content != null && !content.isJsonNull() ? content.getAsString() : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 将回答内容包装为与DeepSeek非流式响应相同的结构，缓存命中时返回给客户端
+     * @param answer 回答内容
+     * @return JSON字符串
+     */
+    public String wrapAnswer(String answer) {
+        JsonObject message = new JsonObject();
+        message.addProperty("role", "assistant");
+        message.addProperty("content", answer);
+        JsonObject choice = new JsonObject();
+        choice.addProperty("index", 0);
+        choice.add("message", message);
+        choice.addProperty("finish_reason", "stop");
+        JsonArray choices = new JsonArray();
+        choices.add(choice);
+        JsonObject root = new JsonObject();
+        root.addProperty("object", "chat.completion");
+        root.addProperty("model", model);
+        root.add("choices", choices);
+        return gson.toJson(root);
+    }
+
+    // 从流式响应的一个数据块中提取增量内容
+    private String extractDelta(String data) {
+        try {
+            JsonObject root = JsonParser.parseString(data).getAsJsonObject();
+            JsonObject delta = root.getAsJsonArray("choices").get(0).getAsJsonObject().getAsJsonObject("delta");
+            if (delta == null) {
+                return null;
+            }
+            JsonElement content = delta.get("content");
+            return content != null && !content.isJsonNull() ? content.getAsString() : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private Request buildRequest(String question, boolean stream) {
+        List<DeepseekRequest.Message> messages = new ArrayList<>();
+        messages.add(DeepseekRequest.Message.builder().role("system").content(SYSTEM_PROMPT).build());
+        messages.add(DeepseekRequest.Message.builder().role("user").content(question).build());
+
+        DeepseekRequest requestBody = DeepseekRequest.builder()
+                .model(model)
+                .messages(messages)
+                .stream(stream ? Boolean.TRUE : null)
+                .build();
+
+        return new Request.Builder()
+                .url(apiUrl)
+                .header("Accept", stream ? "text/event-stream" : "application/json")
+                .header("Authorization", "Bearer " + apiKey)
+                .post(RequestBody.create(gson.toJson(requestBody), JSON))
+                .build();
+    }
+
+    private void sendErrorAndComplete(SseEmitter emitter, String message) {
+        try {
+            emitter.send(SseEmitter.event().name("error").data(message));
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    /**
+     * AI调用并发数已满
+     */
+    public static class BusyException extends RuntimeException {
+        public BusyException() {
+            super("AI服务繁忙，请稍后再试");
+        }
+    }
+
+    /**
+     * 未配置API Key，AI功能关闭
+     */
+    public static class DisabledException extends RuntimeException {
+        public DisabledException() {
+            super("AI服务未启用");
+        }
+    }
+}
@@ -0,0 +1,539 @@
+package com.ltqtest.springbootquickstart.service;
+
+import com.ltqtest.springbootquickstart.entity.BuyRequest;
+import com.ltqtest.springbootquickstart.repository.BuyRequestRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 求购需求搜索服务
+ * 在内存中对标题和说明内容（前indexed-content-length个字）建立字/二元组倒排索引，发布、删除求购时增量更新；
+ * 倒排表是按 (创建时间, ID) 编码后升序排列的long数组，翻页时二分定位到游标位置，
+ * 从最短的倒排表向后（或向前）逐条检查是否同时出现在其余倒排表中，只取够一页即停止，
+ * 再从数据库加载当前页的记录校验并高亮命中的关键词
+ */
+@Service
+public class BuyRequestSearchService {
+
+    private static final Logger logger = Logger.getLogger(BuyRequestSearchService.class.getName());
+
+    // 重建索引时每批从数据库读取的条数
+    private static final int REBUILD_BATCH_SIZE = 500;
+
+    // 内容摘要在首个命中位置前后保留的字符数
+    private static final int SNIPPET_RADIUS = 60;
+
+    @Autowired
+    private BuyRequestRepository buyRequestRepository;
+
+    // 说明内容参与索引的最大长度，超出部分不参与搜索
+    @Value("${buy-request.search.indexed-content-length:500}")
+    private int indexedContentLength;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 单字/二元组 -> 倒排表（覆盖标题和内容前缀）
+    private Map<String, Postings> gramIndex = new HashMap<>();
+
+    // 全部求购，无关键词时使用
+    private Postings allDocs = new Postings();
+
+    // 求购ID -> 排序键
+    private Map<Integer, Long> sortKeys = new HashMap<>();
+
+    // 重建期间的增量更新，重建完成替换索引前按顺序重放；为null表示未在重建
+    private List<Consumer<Index>> journal;
+
+    private volatile boolean ready;
+
+    /**
+     * 启动时建立索引
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            logger.warning("求购需求索引初始化失败，将在首次搜索时重试: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 从数据库分批读取全部求购需求重新建立索引
+     * 读取期间的发布和删除照常更新旧索引并被记录下来，替换前重放到新索引上
+     */
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            journal = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Index rebuilt = new Index();
+        try {
+            int page = 0;
+            Page<BuyRequest> batch;
+            do {
+                batch = buyRequestRepository.findAll(PageRequest.of(page++, REBUILD_BATCH_SIZE, Sort.by("buyRequestId")));
+                for (BuyRequest buyRequest : batch.getContent()) {
+                    rebuilt.add(buyRequest);
+                }
+            } while (batch.hasNext());
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                journal = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (Consumer<Index> update : journal) {
+                update.accept(rebuilt);
+            }
+            journal = null;
+            gramIndex = rebuilt.grams;
+            allDocs = rebuilt.docs;
+            sortKeys = rebuilt.keys;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("求购需求索引已建立，共" + rebuilt.keys.size() + "条");
+    }
+
+    /**
+     * 发布求购后加入索引
+     * @param buyRequest 已保存的求购需求
+     */
+    public void index(BuyRequest buyRequest) {
+        if (buyRequest == null || buyRequest.getBuyRequestId() == null) {
+            return;
+        }
+        apply(target -> target.add(buyRequest));
+    }
+
+    /**
+     * 删除求购后移出索引
+     * @param buyRequest 被删除的求购需求
+     */
+    public void remove(BuyRequest buyRequest) {
+        if (buyRequest == null || buyRequest.getBuyRequestId() == null) {
+            return;
+        }
+        apply(target -> target.remove(buyRequest));
+    }
+
+    /**
+     * 按关键词搜索一页求购需求
+     * @param keyword 关键词，多个关键词以空格分隔，需全部命中
+     * @param ascending 是否按创建时间升序
+     * @param lastCreateTime 上一页最后一条的创建时间（毫秒），为空时从第一页开始
+     * @param lastId 上一页最后一条的求购ID
+     * @param size 每页条数
+     * @return 当前页的求购需求和是否还有下一页
+     */
+    public SearchPage search(String keyword, boolean ascending, Long lastCreateTime, Integer lastId, int size) {
+        if (!ready) {
+            synchronized (this) {
+                if (!ready) {
+                    rebuild();
+                }
+            }
+        }
+        List<String> keywords = keywords(keyword);
+        Long cursor = lastCreateTime != null ? sortKey(lastCreateTime, lastId != null ? lastId : 0) : null;
+
+        // 按顺序分批取候选并加载，二元组倒排表的交集可能有误差，加载后再校验一次
+        List<BuyRequest> result = new ArrayList<>();
+        while (result.size() <= size) {
+            List<Long> candidates;
+            lock.readLock().lock();
+            try {
+                candidates = nextCandidates(keywords, ascending, cursor, size + 1 - result.size());
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (candidates.isEmpty()) {
+                break;
+            }
+            cursor = candidates.get(candidates.size() - 1);
+
+            List<Integer> ids = new ArrayList<>(candidates.size());
+            for (Long key : candidates) {
+                ids.add(idOf(key));
+            }
+            Map<Integer, BuyRequest> loaded = new HashMap<>();
+            for (BuyRequest buyRequest : buyRequestRepository.findAllById(ids)) {
+                loaded.put(buyRequest.getBuyRequestId(), buyRequest);
+            }
+            for (Integer id : ids) {
+                BuyRequest buyRequest = loaded.get(id);
+                if (buyRequest != null && matchesAll(buyRequest, keywords)) {
+                    result.add(buyRequest);
+                }
+            }
+        }
+        boolean hasMore = result.size() > size;
+        return new SearchPage(hasMore ? result.subList(0, size) : result, hasMore);
+    }
+
+    /**
+     * 高亮文本中的关键词，其余部分做HTML转义
+     * @param text 原文
+     * @param keyword 关键词，多个关键词以空格分隔
+     * @return 命中部分以&lt;em&gt;包裹的文本
+     */
+    public String highlight(String text, String keyword) {
+        if (text == null) {
+            return null;
+        }
+        Pattern pattern = highlightPattern(keyword);
+        if (pattern == null) {
+            return escapeHtml(text);
+        }
+        StringBuilder builder = new StringBuilder();
+        Matcher matcher = pattern.matcher(text);
+        int last = 0;
+        while (matcher.find()) {
+            builder.append(escapeHtml(text.substring(last, matcher.start())))
+                    .append("<em>").append(escapeHtml(matcher.group())).append("</em>");
+            last = matcher.end();
+        }
+        builder.append(escapeHtml(text.substring(last)));
+        return builder.toString();
+    }
+
+    /**
+     * 截取首个命中位置附近的内容并高亮
+     * @param text 原文
+     * @param keyword 关键词，多个关键词以空格分隔
+     * @return 高亮后的摘要
+     */
+    public String snippet(String text, String keyword) {
+        if (text == null) {
+            return null;
+        }
+        Pattern pattern = highlightPattern(keyword);
+        int start = 0;
+        if (pattern != null) {
+            Matcher matcher = pattern.matcher(text);
+            if (matcher.find()) {
+                start = Math.max(0, matcher.start() - SNIPPET_RADIUS);
+            }
+        }
+        int end = Math.min(text.length(), start + SNIPPET_RADIUS * 2);
+        return (start > 0 ? "..." : "") + highlight(text.substring(start, end), keyword)
+                + (end < text.length() ? "..." : "");
+    }
+
+    // 从游标之后（降序时为之前）取至多limit个命中全部关键词的排序键
+    private List<Long> nextCandidates(List<String> keywords, boolean ascending, Long cursor, int limit) {
+        List<Postings> lists = new ArrayList<>();
+        if (keywords.isEmpty()) {
+            lists.add(allDocs);
+        }
+        for (String word : keywords) {
+            for (String gram : queryGrams(word)) {
+                Postings postings = gramIndex.get(gram);
+                if (postings == null) {
+                    return Collections.emptyList();
+                }
+                lists.add(postings);
+            }
+        }
+        Postings shortest = lists.get(0);
+        for (Postings postings : lists) {
+            if (postings.size < shortest.size) {
+                shortest = postings;
+            }
+        }
+
+        List<Long> result = new ArrayList<>();
+        int step = ascending ? 1 : -1;
+        int pos;
+        if (cursor == null) {
+            pos = ascending ? 0 : shortest.size - 1;
+        } else {
+            pos = ascending ? shortest.firstAfter(cursor) : shortest.lastBefore(cursor);
+        }
+        for (; pos >= 0 && pos < shortest.size && result.size() < limit; pos += step) {
+            long key = shortest.keys[pos];
+            boolean matched = true;
+            for (Postings postings : lists) {
+                if (postings != shortest && !postings.contains(key)) {
+                    matched = false;
+                    break;
+                }
+            }
+            if (matched) {
+                result.add(key);
+            }
+        }
+        return result;
+    }
+
+    private static boolean matchesAll(BuyRequest buyRequest, List<String> keywords) {
+        String title = normalize(buyRequest.getTitle());
+        String content = normalize(buyRequest.getContent());
+        for (String word : keywords) {
+            if (!title.contains(word) && !content.contains(word)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 关键词需要查询的倒排表：单字直接查，多字查各二元组
+    private static Set<String> queryGrams(String keyword) {
+        Set<String> grams = new LinkedHashSet<>();
+        if (keyword.length() == 1) {
+            grams.add(keyword);
+            return grams;
+        }
+        for (int i = 0; i + 2 <= keyword.length(); i++) {
+            grams.add(keyword.substring(i, i + 2));
+        }
+        return grams;
+    }
+
+    // 对当前索引应用更新，正在重建时同时记录下来
+    private void apply(Consumer<Index> update) {
+        lock.writeLock().lock();
+        try {
+            update.accept(new Index(gramIndex, allDocs, sortKeys));
+            if (journal != null) {
+                journal.add(update);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 参与索引的文本：标题和说明内容前缀
+    private Set<String> documentGrams(BuyRequest buyRequest) {
+        String content = normalize(buyRequest.getContent());
+        if (content.length() > indexedContentLength) {
+            content = content.substring(0, Math.max(0, indexedContentLength));
+        }
+        Set<String> grams = grams(normalize(buyRequest.getTitle()));
+        grams.addAll(grams(content));
+        return grams;
+    }
+
+    // 排序键：高32位为创建时间（秒），低32位为求购ID；创建时间按秒保存，编码后顺序与 (创建时间, ID) 一致
+    private static long sortKey(long createTimeMillis, int id) {
+        return (Math.floorDiv(createTimeMillis, 1000L) << 32) | (id & 0xffffffffL);
+    }
+
+    private static int idOf(long sortKey) {
+        return (int) sortKey;
+    }
+
+    // 按空白拆分关键词并归一化
+    private static List<String> keywords(String keyword) {
+        List<String> keywords = new ArrayList<>();
+        if (keyword == null) {
+            return keywords;
+        }
+        for (String part : keyword.trim().split("\\s+")) {
+            String normalized = normalize(part);
+            if (!normalized.isEmpty()) {
+                keywords.add(normalized);
+            }
+        }
+        return keywords;
+    }
+
+    // 归一化：全角转半角、转小写、去掉空白
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT).replaceAll("\\s+", "");
+    }
+
+    // 文本的单字和二元组
+    private static Set<String> grams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i < text.length(); i++) {
+            grams.add(text.substring(i, i + 1));
+            if (i + 2 <= text.length()) {
+                grams.add(text.substring(i, i + 2));
+            }
+        }
+        return grams;
+    }
+
+    // 高亮使用的正则，按原文不区分大小写匹配任一关键词，长关键词优先
+    private static Pattern highlightPattern(String keyword) {
+        if (keyword == null || keyword.trim().isEmpty()) {
+            return null;
+        }
+        List<String> parts = new ArrayList<>(List.of(keyword.trim().split("\\s+")));
+        parts.sort(Comparator.comparingInt(String::length).reversed());
+        StringBuilder regex = new StringBuilder();
+        for (String part : parts) {
+            if (regex.length() > 0) {
+                regex.append('|');
+            }
+            regex.append(Pattern.quote(part));
+        }
+        return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    }
+
+    private static String escapeHtml(String text) {
+        StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<' -> builder.append("&lt;");
+                case '>' -> builder.append("&gt;");
+                case '&' -> builder.append("&amp;");
+                case '"' -> builder.append("&quot;");
+                case '\'' -> builder.append("&#39;");
+                default -> builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    // 一份索引数据，既可以是当前索引也可以是正在重建的新索引
+    private final class Index {
+        private final Map<String, Postings> grams;
+        private final Postings docs;
+        private final Map<Integer, Long> keys;
+
+        private Index() {
+            this(new HashMap<>(), new Postings(), new HashMap<>());
+        }
+
+        private Index(Map<String, Postings> grams, Postings docs, Map<Integer, Long> keys) {
+            this.grams = grams;
+            this.docs = docs;
+            this.keys = keys;
+        }
+
+        // 重复加入同一求购时先移除旧的排序键，重放时可以重复执行
+        private void add(BuyRequest buyRequest) {
+            remove(buyRequest);
+            Integer id = buyRequest.getBuyRequestId();
+            long key = sortKey(buyRequest.getCreateTime() != null ? buyRequest.getCreateTime().getTime() : 0L, id);
+            for (String gram : documentGrams(buyRequest)) {
+                grams.computeIfAbsent(gram, k -> new Postings()).add(key);
+            }
+            docs.add(key);
+            keys.put(id, key);
+        }
+
+        private void remove(BuyRequest buyRequest) {
+            Long key = keys.remove(buyRequest.getBuyRequestId());
+            if (key == null) {
+                return;
+            }
+            docs.remove(key);
+            for (String gram : documentGrams(buyRequest)) {
+                Postings postings = grams.get(gram);
+                if (postings != null && postings.remove(key) && postings.size == 0) {
+                    grams.remove(gram);
+                }
+            }
+        }
+    }
+
+    // 升序排列、不重复的排序键数组；新求购的创建时间最晚，通常追加在末尾
+    private static final class Postings {
+        private long[] keys = new long[2];
+        private int size;
+
+        private boolean add(long key) {
+            int pos = Arrays.binarySearch(keys, 0, size, key);
+            if (pos >= 0) {
+                return false;
+            }
+            pos = -pos - 1;
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size + (size >> 1) + 1);
+            }
+            System.arraycopy(keys, pos, keys, pos + 1, size - pos);
+            keys[pos] = key;
+            size++;
+            return true;
+        }
+
+        private boolean remove(long key) {
+            int pos = Arrays.binarySearch(keys, 0, size, key);
+            if (pos < 0) {
+                return false;
+            }
+            System.arraycopy(keys, pos + 1, keys, pos, size - pos - 1);
+            size--;
+            return true;
+        }
+
+        private boolean contains(long key) {
+            return Arrays.binarySearch(keys, 0, size, key) >= 0;
+        }
+
+        // 第一个大于key的位置
+        private int firstAfter(long key) {
+            int pos = Arrays.binarySearch(keys, 0, size, key);
+            return pos >= 0 ? pos + 1 : -pos - 1;
+        }
+
+        // 最后一个小于key的位置
+        private int lastBefore(long key) {
+            int pos = Arrays.binarySearch(keys, 0, size, key);
+            return pos >= 0 ? pos - 1 : -pos - 2;
+        }
+    }
+
+    /**
+     * 一页搜索结果
+     */
+    public static class SearchPage {
+        private final List<BuyRequest> buyRequests;
+        private final boolean hasMore;
+
+        private SearchPage(List<BuyRequest> buyRequests, boolean hasMore) {
+            this.buyRequests = buyRequests;
+            this.hasMore = hasMore;
+        }
+
+        public List<BuyRequest> getBuyRequests() {
+            return buyRequests;
+        }
+
+        public boolean isHasMore() {
+            return hasMore;
+        }
+    }
+}
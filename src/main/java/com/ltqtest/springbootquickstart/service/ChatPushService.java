@@ -0,0 +1,213 @@
+package com.ltqtest.springbootquickstart.service;
+
+import com.ltqtest.springbootquickstart.entity.ExpertUserChatRecord;
+
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * 聊天记录实时推送服务
+ * 按“专家+用户”会话维护SSE连接，监听ChatRecordEvent并把新提问和专家回答推送给该会话的所有连接，
+ * 客户端无需轮询聊天记录接口；推送在独立线程池中执行，不阻塞发布事件的请求线程。
+ * 连接断开期间的消息由客户端重连后通过聊天记录接口的afterId/since增量同步补齐
+ */
+@Service
+public class ChatPushService {
+
+    private static final Logger logger = Logger.getLogger(ChatPushService.class.getName());
+
+    private final Map<String, Set<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+
+    private final AtomicInteger connectionCount = new AtomicInteger();
+
+    private final ThreadPoolExecutor executor;
+
+    // 上一轮心跳是否仍在发送，慢连接较多时不重复提交
+    private final AtomicBoolean heartbeatRunning = new AtomicBoolean();
+
+    @Value("${chat.push.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    @Value("${chat.push.max-connections:2000}")
+    private int maxConnections;
+
+    public ChatPushService(@Value("${chat.push.threads:2}") int threads,
+                           @Value("${chat.push.queue-size:1000}") int queueSize) {
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "chat-push-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        for (Set<SseEmitter> emitters : subscribers.values()) {
+            for (SseEmitter emitter : emitters) {
+                emitter.complete();
+            }
+        }
+    }
+
+    /**
+     * 订阅会话的聊天记录推送
+     * @param expertId 专家ID
+     * @param userId 用户ID
+     * @return SSE连接
+     * @throws IllegalStateException 连接数已达上限
+     */
+    public SseEmitter subscribe(Integer expertId, Integer userId) {
+        if (connectionCount.incrementAndGet() > maxConnections) {
+            connectionCount.decrementAndGet();
+            throw new IllegalStateException("实时推送连接数已满，请稍后再试或改用聊天记录接口");
+        }
+        String key = key(expertId, userId);
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        // 增删连接都在ConcurrentHashMap的compute中完成，避免向刚被移除的空集合中添加
+        subscribers.compute(key, (k, emitters) -> {
+            Set<SseEmitter> result = emitters != null ? emitters : new CopyOnWriteArraySet<>();
+            result.add(emitter);
+            return result;
+        });
+
+        Runnable remove = () -> unsubscribe(key, emitter);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+
+        try {
+            emitter.send(SseEmitter.event().name("ready").data("connected"));
+        } catch (IOException e) {
+            unsubscribe(key, emitter);
+        }
+        return emitter;
+    }
+
+    /**
+     * 聊天记录变化时推送给对应会话
+     */
+    @EventListener
+    public void onChatRecord(ChatRecordEvent event) {
+        ExpertUserChatRecord record = event.getRecord();
+        String key = key(record.getExpertId(), record.getUserId());
+        Set<SseEmitter> emitters = subscribers.get(key);
+        if (emitters == null || emitters.isEmpty()) {
+            return;
+        }
+        Map<String, Object> data = toRecordMap(record);
+        try {
+            executor.execute(() -> {
+                for (SseEmitter emitter : emitters) {
+                    send(key, emitter, SseEmitter.event().id(String.valueOf(record.getEuChatId())).name("chat").data(data));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warning("聊天推送队列已满，丢弃推送（客户端可通过增量同步补齐）: " + key);
+        }
+    }
+
+    /**
+     * 定时发送心跳，保持连接并清理已断开的连接
+     * 写入交给推送线程池执行，不占用Spring默认的单线程调度器，避免慢连接拖住其他定时任务
+     */
+    @Scheduled(fixedDelayString = "${chat.push.heartbeat-ms:25000}")
+    public void heartbeat() {
+        if (subscribers.isEmpty() || !heartbeatRunning.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    for (Map.Entry<String, Set<SseEmitter>> entry : subscribers.entrySet()) {
+                        for (SseEmitter emitter : entry.getValue()) {
+                            send(entry.getKey(), emitter, SseEmitter.event().comment("heartbeat"));
+                        }
+                    }
+                } finally {
+                    heartbeatRunning.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            heartbeatRunning.set(false);
+            logger.warning("聊天推送队列已满，跳过本轮心跳");
+        }
+    }
+
+    /**
+     * 获取推送统计
+     * @return 会话数、连接数
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("conversationCount", subscribers.size());
+        data.put("connectionCount", connectionCount.get());
+        return data;
+    }
+
+    /**
+     * 聊天记录的接口返回格式
+     * @param record 聊天记录
+     * @return 记录数据
+     */
+    public static Map<String, Object> toRecordMap(ExpertUserChatRecord record) {
+        Map<String, Object> recordMap = new HashMap<>();
+        recordMap.put("euc_id", record.getEuChatId());
+        recordMap.put("expertId", record.getExpertId());
+        recordMap.put("userId", record.getUserId());
+        recordMap.put("question", record.getQuestion());
+        recordMap.put("answer", record.getAnswer());
+        recordMap.put("aiGenerated", Boolean.TRUE.equals(record.getAiGenerated()));
+        recordMap.put("time", record.getSendTime().toString());
+        return recordMap;
+    }
+
+    private void send(String key, SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            // 同一连接可能同时被推送线程和心跳线程写入
+            synchronized (emitter) {
+                emitter.send(event);
+            }
+        } catch (Exception e) {
+            unsubscribe(key, emitter);
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void unsubscribe(String key, SseEmitter emitter) {
+        boolean[] removed = new boolean[1];
+        subscribers.computeIfPresent(key, (k, emitters) -> {
+            removed[0] = emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+        if (removed[0]) {
+            connectionCount.decrementAndGet();
+        }
+    }
+
+    private static String key(Integer expertId, Integer userId) {
+        return expertId + ":" + userId;
+    }
+}
@@ -0,0 +1,21 @@
+package com.ltqtest.springbootquickstart.service;
+
+import com.ltqtest.springbootquickstart.entity.ExpertUserChatRecord;
+
+/**
+ * 专家与用户聊天记录变化事件（新提问、专家回答）
+ * 通过Spring的ApplicationEventPublisher在进程内发布，订阅方为ChatPushService；
+ * 以后需要多实例推送时，可增加一个监听器把事件转发到消息中间件，发布方无需修改
+ */
+public class ChatRecordEvent {
+
+    private final ExpertUserChatRecord record;
+
+    public ChatRecordEvent(ExpertUserChatRecord record) {
+        this.record = record;
+    }
+
+    public ExpertUserChatRecord getRecord() {
+        return record;
+    }
+}
@@ -0,0 +1,207 @@
+package com.ltqtest.springbootquickstart.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ltqtest.springbootquickstart.repository.ProductCommentRepository;
+
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * 评论点赞计数服务（延迟批量写入）
+ * 点赞/取消点赞只累加到按评论ID分开的LongAdder中，不读写数据库；定时任务把累计的增量
+ * 在一个事务中以 UPDATE ... SET comment_like_count = comment_like_count + ? 写回，热门评论每个周期只写一次。
+ * 读取时返回已持久化的点赞数加上尚未写回的增量。进程正常关闭时会写回剩余增量
+ */
+@Service
+public class CommentLikeService {
+
+    private static final Logger logger = Logger.getLogger(CommentLikeService.class.getName());
+
+    @Autowired
+    private ProductCommentRepository productCommentRepository;
+
+    @Autowired
+    private ProductEngagementService productEngagementService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    // 已持久化的点赞数（同时用于判断评论是否存在），写回后失效重新加载
+    private final Cache<Long, Long> persistedCounts;
+
+    // 尚未写回的增量
+    private final Map<Long, LongAdder> pending = new ConcurrentHashMap<>();
+
+    // 上个周期因增量为0被移除的计数器，保留一个周期以写回移除前后并发累加的增量
+    private List<Map.Entry<Long, LongAdder>> draining = new ArrayList<>();
+
+    // 累计统计
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong totalUpdatedComments = new AtomicLong();
+    private volatile long lastDurationMs;
+
+    public CommentLikeService(PlatformTransactionManager transactionManager,
+                              @Value("${comment.like.cache.max-size:100000}") long maxSize,
+                              @Value("${comment.like.cache.ttl-seconds:600}") long ttlSeconds) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.persistedCounts = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    /**
+     * 累加点赞数
+     * @param productCommentId 评论ID
+     * @param delta 增量（点赞为1，取消点赞为-1）
+     * @return 累加后的点赞数，评论不存在时返回null
+     */
+    public Long add(Long productCommentId, long delta) {
+        Long persisted = persistedCounts.get(productCommentId,
+                id -> productCommentRepository.findLikeCountById(id).orElse(null));
+        if (persisted == null) {
+            return null;
+        }
+        LongAdder adder = pending.computeIfAbsent(productCommentId, id -> new LongAdder());
+        adder.add(delta);
+        return Math.max(0, persisted + adder.sum());
+    }
+
+    /**
+     * 计算包含未写回增量的点赞数
+     * @param productCommentId 评论ID
+     * @param persistedCount 从数据库读取的点赞数
+     * @return 当前点赞数
+     */
+    public long currentCount(Long productCommentId, Long persistedCount) {
+        LongAdder adder = pending.get(productCommentId);
+        long pendingDelta = adder != null ? adder.sum() : 0;
+        return Math.max(0, (persistedCount != null ? persistedCount : 0) + pendingDelta);
+    }
+
+    /**
+     * 评论删除后丢弃其计数，在事务中调用时等提交后再丢弃，回滚时保留
+     * @param productCommentIds 评论ID
+     */
+    public void evict(Collection<Long> productCommentIds) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    doEvict(productCommentIds);
+                }
+            });
+        } else {
+            doEvict(productCommentIds);
+        }
+    }
+
+    private void doEvict(Collection<Long> productCommentIds) {
+        for (Long productCommentId : productCommentIds) {
+            pending.remove(productCommentId);
+        }
+        persistedCounts.invalidateAll(productCommentIds);
+    }
+
+    /**
+     * 定时把累计的增量写回数据库
+     */
+    @Scheduled(fixedDelayString = "${comment.like.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        long start = System.currentTimeMillis();
+        List<Map.Entry<Long, LongAdder>> toFlush = new ArrayList<>();
+        List<Long> deltas = new ArrayList<>();
+        List<Map.Entry<Long, LongAdder>> nextDraining = new ArrayList<>();
+        for (Map.Entry<Long, LongAdder> entry : pending.entrySet()) {
+            long delta = entry.getValue().sum();
+            if (delta != 0) {
+                toFlush.add(Map.entry(entry.getKey(), entry.getValue()));
+                deltas.add(delta);
+            } else if (pending.remove(entry.getKey(), entry.getValue())) {
+                // 移除时可能有点赞正在向该计数器累加，下个周期再检查一次
+                nextDraining.add(Map.entry(entry.getKey(), entry.getValue()));
+            }
+        }
+        for (Map.Entry<Long, LongAdder> entry : draining) {
+            long delta = entry.getValue().sum();
+            if (delta != 0) {
+                toFlush.add(entry);
+                deltas.add(delta);
+            }
+        }
+        if (toFlush.isEmpty()) {
+            draining = nextDraining;
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (int i = 0; i < toFlush.size(); i++) {
+                    productCommentRepository.addLikeCount(toFlush.get(i).getKey(), deltas.get(i));
+                }
+            });
+        } catch (Exception e) {
+            // 增量仍保留在计数器中，已移出pending的计数器继续留在draining中，下个周期重试
+            List<Map.Entry<Long, LongAdder>> retained = new ArrayList<>(draining);
+            retained.addAll(nextDraining);
+            draining = retained;
+            logger.warning("评论点赞数写回失败，将在下次重试: " + e.getMessage());
+            return;
+        }
+        draining = nextDraining;
+
+        // 写回成功后先从计数器中扣除已写回的部分，再让持久化值失效；期间新增的点赞仍保留在计数器中。
+        // 顺序反过来时，失效后、扣除前读取的请求会把新持久化值和未扣除的增量重复计算
+        Map<Long, Long> flushed = new HashMap<>();
+        for (int i = 0; i < toFlush.size(); i++) {
+            toFlush.get(i).getValue().add(-deltas.get(i));
+            persistedCounts.invalidate(toFlush.get(i).getKey());
+            flushed.merge(toFlush.get(i).getKey(), deltas.get(i), Long::sum);
+        }
+        try {
+            productEngagementService.onLikesFlushed(flushed);
+        } catch (Exception e) {
+            logger.warning("商品评论聚合点赞数更新失败，等待定时重建校正: " + e.getMessage());
+        }
+        flushCount.incrementAndGet();
+        totalUpdatedComments.addAndGet(toFlush.size());
+        lastDurationMs = System.currentTimeMillis() - start;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * 获取写回统计
+     * @return 写回次数、累计更新的评论数、待写回评论数、最近一次耗时
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("flushCount", flushCount.get());
+        data.put("totalUpdatedComments", totalUpdatedComments.get());
+        data.put("pendingComments", pending.size());
+        data.put("lastDurationMs", lastDurationMs);
+        return data;
+    }
+}
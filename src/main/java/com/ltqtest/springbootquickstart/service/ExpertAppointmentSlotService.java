@@ -0,0 +1,384 @@
+package com.ltqtest.springbootquickstart.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ltqtest.springbootquickstart.entity.ExpertAppointment;
+import com.ltqtest.springbootquickstart.repository.ExpertAppointmentRepository;
+import com.ltqtest.springbootquickstart.repository.ExpertRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 专家预约时段服务
+ * 按“专家+日期”缓存当天有效预约（待处理、已同意）合并后的占用时段，时段按开始时间有序且互不重叠，
+ * 冲突检查只需一次lowerEntry查找（O(log n)）；热门专家的冲突请求可以直接在内存中拒绝。
+ * 真正创建预约时先锁定专家行（SELECT ... FOR UPDATE），在锁内重新从数据库加载当天占用时段再检查并保存，
+ * 因此缓存即使过期也不会导致重复预约，并发预约同一专家时不会同时通过检查。
+ * 取消、审批等状态变化不加专家锁，因此范围查询和预约写回缓存前都按分段版本号确认读取以来没有失效或更新，
+ * 否则不写缓存，避免把刚释放的时段重新写回
+ */
+@Service
+public class ExpertAppointmentSlotService {
+
+    // 占用时段的预约状态
+    public static final List<String> ACTIVE_STATUSES = Arrays.asList("pending", "approved");
+
+    @Autowired
+    private ExpertAppointmentRepository expertAppointmentRepository;
+
+    @Autowired
+    private ExpertRepository expertRepository;
+
+    // 版本号分段数
+    private static final int VERSION_STRIPES = 64;
+
+    private final Cache<SlotKey, DaySlots> cache;
+
+    // 分段版本号，缓存被失效或写入新值前递增
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+
+    public ExpertAppointmentSlotService(@Value("${expert.appointment.slot-cache.max-size:10000}") long maxSize,
+                                        @Value("${expert.appointment.slot-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    /**
+     * 根据缓存判断时段是否与已有预约冲突，用于在加锁前快速拒绝
+     * @param expertId 专家ID
+     * @param date 预约日期
+     * @param startTime 开始时间
+     * @param endTime 结束时间
+     * @return 是否冲突
+     */
+    public boolean hasConflict(Integer expertId, LocalDate date, LocalTime startTime, LocalTime endTime) {
+        return getDaySlots(expertId, date).overlaps(startTime, endTime);
+    }
+
+    /**
+     * 获取专家某天的占用时段
+     * @param expertId 专家ID
+     * @param date 日期
+     * @return 合并后的占用时段（开始时间 -> 结束时间），按开始时间升序
+     */
+    public DaySlots getDaySlots(Integer expertId, LocalDate date) {
+        return cache.get(new SlotKey(expertId, date), key -> loadDaySlots(key.expertId, key.date));
+    }
+
+    /**
+     * 获取专家在日期范围内每天的占用时段
+     * 已缓存的日期直接返回，其余日期通过一次范围查询加载后写入缓存
+     * @param expertId 专家ID
+     * @param startDate 开始日期（含）
+     * @param endDate 结束日期（含）
+     * @return 日期 -> 占用时段，按日期升序
+     */
+    public NavigableMap<LocalDate, DaySlots> getDaySlots(Integer expertId, LocalDate startDate, LocalDate endDate) {
+        NavigableMap<LocalDate, DaySlots> result = new TreeMap<>();
+        LocalDate firstMissing = null;
+        LocalDate lastMissing = null;
+        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+            DaySlots daySlots = cache.getIfPresent(new SlotKey(expertId, date));
+            if (daySlots != null) {
+                result.put(date, daySlots);
+            } else {
+                if (firstMissing == null) {
+                    firstMissing = date;
+                }
+                lastMissing = date;
+            }
+        }
+        if (firstMissing == null) {
+            return result;
+        }
+
+        // 查询前记下各日期的版本号
+        Map<LocalDate, Long> loadVersions = new HashMap<>();
+        for (LocalDate date = firstMissing; !date.isAfter(lastMissing); date = date.plusDays(1)) {
+            if (!result.containsKey(date)) {
+                loadVersions.put(date, versions.get(stripe(new SlotKey(expertId, date))));
+            }
+        }
+
+        // 未缓存的日期一次查询加载，按日期分组
+        Map<LocalDate, List<LocalTime[]>> intervalsByDate = new HashMap<>();
+        for (ExpertAppointment appointment : expertAppointmentRepository.findByExpertIdAndDateBetweenAndStatusIn(
+                expertId, firstMissing, lastMissing, ACTIVE_STATUSES)) {
+            if (appointment.getStartTime() != null && appointment.getEndTime() != null) {
+                intervalsByDate.computeIfAbsent(appointment.getDate(), k -> new ArrayList<>())
+                        .add(new LocalTime[]{appointment.getStartTime(), appointment.getEndTime()});
+            }
+        }
+        for (LocalDate date = firstMissing; !date.isAfter(lastMissing); date = date.plusDays(1)) {
+            if (result.containsKey(date)) {
+                continue;
+            }
+            DaySlots loaded = DaySlots.of(intervalsByDate.getOrDefault(date, new ArrayList<>()));
+            long loadVersion = loadVersions.get(date);
+            // 已有缓存（锁内加载或预约后写入的更新数据）时不覆盖；查询期间版本变化说明结果可能已过期，不写入
+            DaySlots daySlots = cache.asMap().compute(new SlotKey(expertId, date), (key, current) -> {
+                if (current != null) {
+                    return current;
+                }
+                return versions.get(stripe(key)) == loadVersion ? loaded : null;
+            });
+            result.put(date, daySlots != null ? daySlots : loaded);
+        }
+        return result;
+    }
+
+    /**
+     * 创建预约：锁定专家后重新检查时段冲突并保存
+     * @param appointment 待保存的预约
+     * @return 保存后的预约
+     * @throws IllegalStateException 专家不存在
+     * @throws SlotConflictException 时段已被预约
+     */
+    @Transactional
+    public ExpertAppointment book(ExpertAppointment appointment) {
+        Integer expertId = appointment.getExpertId();
+        LocalDate date = appointment.getDate();
+
+        // 锁定专家，同一专家的预约在此串行执行
+        expertRepository.findByIdForUpdate(expertId)
+                .orElseThrow(() -> new IllegalStateException("专家不存在"));
+
+        SlotKey key = new SlotKey(expertId, date);
+        // 读取前记下版本号，读取后若有取消等状态变化使缓存失效，则不再写回
+        long loadVersion = versions.get(stripe(key));
+        DaySlots daySlots = loadDaySlots(expertId, date);
+        if (daySlots.overlaps(appointment.getStartTime(), appointment.getEndTime())) {
+            // 锁内读取的数据较新，刷新缓存（事务回滚不影响）
+            putIfUnchanged(key, daySlots, loadVersion);
+            throw new SlotConflictException();
+        }
+
+        ExpertAppointment savedAppointment = expertAppointmentRepository.save(appointment);
+        putAfterCommit(key, daySlots.plus(appointment.getStartTime(), appointment.getEndTime()), loadVersion);
+        return savedAppointment;
+    }
+
+    /**
+     * 预约状态变化（取消、审批、完成等）后使该专家当天的缓存失效
+     * 在事务中调用时延迟到事务提交后执行
+     * @param expertId 专家ID
+     * @param date 预约日期
+     */
+    public void evict(Integer expertId, LocalDate date) {
+        if (expertId == null || date == null) {
+            return;
+        }
+        SlotKey key = new SlotKey(expertId, date);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate(key);
+                }
+            });
+        } else {
+            invalidate(key);
+        }
+    }
+
+    private DaySlots loadDaySlots(Integer expertId, LocalDate date) {
+        List<ExpertAppointment> appointments =
+                expertAppointmentRepository.findByExpertIdAndDateAndStatusIn(expertId, date, ACTIVE_STATUSES);
+        List<LocalTime[]> intervals = new ArrayList<>(appointments.size());
+        for (ExpertAppointment appointment : appointments) {
+            if (appointment.getStartTime() != null && appointment.getEndTime() != null) {
+                intervals.add(new LocalTime[]{appointment.getStartTime(), appointment.getEndTime()});
+            }
+        }
+        return DaySlots.of(intervals);
+    }
+
+    private void putAfterCommit(SlotKey key, DaySlots daySlots, long loadVersion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    putIfUnchanged(key, daySlots, loadVersion);
+                }
+            });
+        } else {
+            putIfUnchanged(key, daySlots, loadVersion);
+        }
+    }
+
+    // 失效前先递增版本号，使正在进行的范围查询和预约放弃写回
+    private void invalidate(SlotKey key) {
+        versions.incrementAndGet(stripe(key));
+        cache.invalidate(key);
+    }
+
+    // 读取以来版本号未变化时写入并递增版本号，否则移除缓存，下次访问重新加载
+    private void putIfUnchanged(SlotKey key, DaySlots daySlots, long loadVersion) {
+        int stripe = stripe(key);
+        cache.asMap().compute(key, (k, current) -> {
+            if (versions.get(stripe) != loadVersion) {
+                return null;
+            }
+            versions.incrementAndGet(stripe);
+            return daySlots;
+        });
+    }
+
+    private static int stripe(SlotKey key) {
+        return (key.hashCode() & 0x7fffffff) % VERSION_STRIPES;
+    }
+
+    /**
+     * 某天的占用时段（不可变），相互重叠或相接的预约合并为一个时段
+     */
+    public static class DaySlots {
+        private final NavigableMap<LocalTime, LocalTime> blocks;
+
+        private DaySlots(NavigableMap<LocalTime, LocalTime> blocks) {
+            this.blocks = Collections.unmodifiableNavigableMap(blocks);
+        }
+
+        private static DaySlots of(List<LocalTime[]> intervals) {
+            intervals.sort(Comparator.comparing((LocalTime[] interval) -> interval[0]));
+            TreeMap<LocalTime, LocalTime> blocks = new TreeMap<>();
+            LocalTime currentStart = null;
+            LocalTime currentEnd = null;
+            for (LocalTime[] interval : intervals) {
+                if (currentStart != null && !interval[0].isAfter(currentEnd)) {
+                    if (interval[1].isAfter(currentEnd)) {
+                        currentEnd = interval[1];
+                    }
+                    continue;
+                }
+                if (currentStart != null) {
+                    blocks.put(currentStart, currentEnd);
+                }
+                currentStart = interval[0];
+                currentEnd = interval[1];
+            }
+            if (currentStart != null) {
+                blocks.put(currentStart, currentEnd);
+            }
+            return new DaySlots(blocks);
+        }
+
+        /**
+         * 判断[startTime, endTime)是否与占用时段重叠（首尾相接不算重叠）
+         * 时段互不重叠且有序，开始时间早于endTime的最后一个时段结束时间最晚，只需检查它
+         */
+        public boolean overlaps(LocalTime startTime, LocalTime endTime) {
+            Map.Entry<LocalTime, LocalTime> block = blocks.lowerEntry(endTime);
+            return block != null && block.getValue().isAfter(startTime);
+        }
+
+        /**
+         * 计算[from, to)内除去占用时段后的空闲时段
+         * @param from 开始时间
+         * @param to 结束时间
+         * @return 空闲时段列表，每项为[开始时间, 结束时间]，按时间升序
+         */
+        public List<LocalTime[]> freeIntervals(LocalTime from, LocalTime to) {
+            List<LocalTime[]> free = new ArrayList<>();
+            if (!from.isBefore(to)) {
+                return free;
+            }
+            LocalTime cursor = from;
+            // 从可能覆盖from的时段开始遍历，到to之前结束
+            LocalTime firstKey = blocks.floorKey(from);
+            NavigableMap<LocalTime, LocalTime> candidates = firstKey != null
+                    ? blocks.subMap(firstKey, true, to, false)
+                    : blocks.headMap(to, false);
+            for (Map.Entry<LocalTime, LocalTime> block : candidates.entrySet()) {
+                if (block.getKey().isAfter(cursor)) {
+                    free.add(new LocalTime[]{cursor, block.getKey()});
+                }
+                if (block.getValue().isAfter(cursor)) {
+                    cursor = block.getValue();
+                }
+                if (!cursor.isBefore(to)) {
+                    return free;
+                }
+            }
+            if (cursor.isBefore(to)) {
+                free.add(new LocalTime[]{cursor, to});
+            }
+            return free;
+        }
+
+        /**
+         * 获取占用时段
+         * @return 开始时间 -> 结束时间
+         */
+        public NavigableMap<LocalTime, LocalTime> getBlocks() {
+            return blocks;
+        }
+
+        // 加入一个新的占用时段，返回新的实例
+        private DaySlots plus(LocalTime startTime, LocalTime endTime) {
+            List<LocalTime[]> intervals = new ArrayList<>(blocks.size() + 1);
+            for (Map.Entry<LocalTime, LocalTime> block : blocks.entrySet()) {
+                intervals.add(new LocalTime[]{block.getKey(), block.getValue()});
+            }
+            intervals.add(new LocalTime[]{startTime, endTime});
+            return of(intervals);
+        }
+    }
+
+    /**
+     * 时段已被预约
+     */
+    public static class SlotConflictException extends RuntimeException {
+        public SlotConflictException() {
+            super("该专家在该时间段已被预约，请选择其他时间");
+        }
+    }
+
+    private static final class SlotKey {
+        private final Integer expertId;
+        private final LocalDate date;
+
+        private SlotKey(Integer expertId, LocalDate date) {
+            this.expertId = expertId;
+            this.date = date;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SlotKey)) {
+                return false;
+            }
+            SlotKey other = (SlotKey) o;
+            return Objects.equals(expertId, other.expertId) && Objects.equals(date, other.date);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(expertId, date);
+        }
+    }
+}
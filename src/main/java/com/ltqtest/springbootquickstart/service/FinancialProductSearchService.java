@@ -0,0 +1,348 @@
+package com.ltqtest.springbootquickstart.service;
+
+import com.ltqtest.springbootquickstart.entity.FinancialProduct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 金融产品搜索服务
+ * 在内存中对产品名称、描述和标签建立字/二元组倒排索引，搜索时只需合并少量倒排表，不再每次查询全表；
+ * 索引不可变，由ReferenceDataCacheService在加载金融产品快照时一并建立，与产品列表接口共用同一份快照，
+ * 产品新增、修改、删除后刷新该快照即可，读操作无需加锁
+ */
+@Service
+public class FinancialProductSearchService {
+
+    // 各字段命中时的相关度权重
+    private static final int NAME_WEIGHT = 3;
+    private static final int NAME_PREFIX_BONUS = 2;
+    private static final int TAG_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    @Autowired
+    private ReferenceDataCacheService referenceDataCacheService;
+
+    /**
+     * 为一组产品建立索引
+     * @param products 金融产品
+     * @return 不可变索引
+     */
+    public static ProductIndex buildIndex(Collection<FinancialProduct> products) {
+        return new ProductIndex(products);
+    }
+
+    /**
+     * 搜索产品，结果按相关度降序、产品ID升序排列
+     * @param query 搜索条件
+     * @return 匹配的产品
+     */
+    public List<FinancialProduct> search(SearchQuery query) {
+        ProductIndex current = referenceDataCacheService.getFinancialProductIndex();
+
+        // 候选集：先用标签和名称前缀缩小范围，再与各关键词的倒排表求交
+        Set<Integer> candidates = null;
+        if (query.getTag() != null && !query.getTag().trim().isEmpty()) {
+            candidates = new HashSet<>(current.tagIndex.getOrDefault(normalize(query.getTag()), Collections.emptySet()));
+        }
+        if (query.getNamePrefix() != null && !query.getNamePrefix().trim().isEmpty()) {
+            String prefix = normalize(query.getNamePrefix());
+            Set<Integer> prefixMatches = new HashSet<>();
+            for (Set<Integer> ids : current.nameIndex.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values()) {
+                prefixMatches.addAll(ids);
+            }
+            candidates = intersect(candidates, prefixMatches);
+        }
+
+        List<String> keywords = keywords(query.getKeyword());
+        for (String keyword : keywords) {
+            candidates = intersect(candidates, current.lookup(keyword));
+            if (candidates.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+        if (candidates == null) {
+            candidates = current.products.keySet();
+        }
+
+        // 范围过滤与相关度计算
+        Map<Integer, Integer> scores = new HashMap<>();
+        for (Integer fpId : candidates) {
+            IndexedProduct indexed = current.indexed.get(fpId);
+            if (indexed == null || !matchesRange(indexed.product, query)) {
+                continue;
+            }
+            int score = 0;
+            boolean matchedAll = true;
+            for (String keyword : keywords) {
+                int keywordScore = indexed.score(keyword);
+                if (keywordScore == 0) {
+                    matchedAll = false;
+                    break;
+                }
+                score += keywordScore;
+            }
+            if (matchedAll) {
+                scores.put(fpId, score);
+            }
+        }
+
+        List<Integer> ids = new ArrayList<>(scores.keySet());
+        ids.sort((a, b) -> {
+            int compare = Integer.compare(scores.get(b), scores.get(a));
+            return compare != 0 ? compare : Integer.compare(a, b);
+        });
+
+        // 未指定条数时返回全部匹配结果
+        int limit = query.getLimit() == null || query.getLimit() <= 0 ? ids.size() : query.getLimit();
+        List<FinancialProduct> result = new ArrayList<>(Math.min(limit, ids.size()));
+        for (int i = 0; i < ids.size() && i < limit; i++) {
+            result.add(current.products.get(ids.get(i)));
+        }
+        return result;
+    }
+
+    private static boolean matchesRange(FinancialProduct product, SearchQuery query) {
+        Float rate = product.getAnnualRate();
+        if (query.getMinRate() != null && (rate == null || rate < query.getMinRate())) {
+            return false;
+        }
+        if (query.getMaxRate() != null && (rate == null || rate > query.getMaxRate())) {
+            return false;
+        }
+        // 申请金额需落在产品的额度范围内
+        if (query.getAmount() != null) {
+            if (product.getMinAmount() != null && query.getAmount() < product.getMinAmount()) {
+                return false;
+            }
+            if (product.getMaxAmount() != null && query.getAmount() > product.getMaxAmount()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Set<Integer> intersect(Set<Integer> current, Set<Integer> other) {
+        if (current == null) {
+            return new HashSet<>(other);
+        }
+        current.retainAll(other);
+        return current;
+    }
+
+    // 按空白拆分关键词并归一化
+    private static List<String> keywords(String keyword) {
+        List<String> keywords = new ArrayList<>();
+        if (keyword == null) {
+            return keywords;
+        }
+        for (String part : keyword.trim().split("\\s+")) {
+            String normalized = normalize(part);
+            if (!normalized.isEmpty()) {
+                keywords.add(normalized);
+            }
+        }
+        return keywords;
+    }
+
+    // 归一化：全角转半角、转小写、去掉空白
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT).replaceAll("\\s+", "");
+    }
+
+    // 文本的单字和二元组
+    private static Set<String> grams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i < text.length(); i++) {
+            grams.add(text.substring(i, i + 1));
+            if (i + 2 <= text.length()) {
+                grams.add(text.substring(i, i + 2));
+            }
+        }
+        return grams;
+    }
+
+    /**
+     * 搜索条件
+     */
+    public static class SearchQuery {
+        private String keyword; // 关键词，多个关键词以空格分隔，需全部命中
+        private String tag; // 标签（精确匹配）
+        private String namePrefix; // 产品名称前缀
+        private Float minRate; // 最低年利率
+        private Float maxRate; // 最高年利率
+        private Integer amount; // 申请金额，需在产品额度范围内
+        private Integer limit; // 返回条数，为空时返回全部
+
+        public String getKeyword() {
+            return keyword;
+        }
+
+        public void setKeyword(String keyword) {
+            this.keyword = keyword;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+
+        public void setTag(String tag) {
+            this.tag = tag;
+        }
+
+        public String getNamePrefix() {
+            return namePrefix;
+        }
+
+        public void setNamePrefix(String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
+
+        public Float getMinRate() {
+            return minRate;
+        }
+
+        public void setMinRate(Float minRate) {
+            this.minRate = minRate;
+        }
+
+        public Float getMaxRate() {
+            return maxRate;
+        }
+
+        public void setMaxRate(Float maxRate) {
+            this.maxRate = maxRate;
+        }
+
+        public Integer getAmount() {
+            return amount;
+        }
+
+        public void setAmount(Integer amount) {
+            this.amount = amount;
+        }
+
+        public Integer getLimit() {
+            return limit;
+        }
+
+        public void setLimit(Integer limit) {
+            this.limit = limit;
+        }
+    }
+
+    // 单个产品的归一化字段
+    private static class IndexedProduct {
+        private final FinancialProduct product;
+        private final String name;
+        private final String description;
+        private final Set<String> tags;
+
+        private IndexedProduct(FinancialProduct product) {
+            this.product = product;
+            this.name = normalize(product.getFpName());
+            this.description = normalize(product.getFpDescription());
+            this.tags = new HashSet<>();
+            for (String tag : product.getTagsArray()) {
+                String normalized = normalize(tag);
+                if (!normalized.isEmpty()) {
+                    tags.add(normalized);
+                }
+            }
+        }
+
+        // 关键词在各字段中的命中得分，未命中返回0
+        private int score(String keyword) {
+            int score = 0;
+            if (name.contains(keyword)) {
+                score += NAME_WEIGHT;
+                if (name.startsWith(keyword)) {
+                    score += NAME_PREFIX_BONUS;
+                }
+            }
+            for (String tag : tags) {
+                if (tag.contains(keyword)) {
+                    score += TAG_WEIGHT;
+                    break;
+                }
+            }
+            if (description.contains(keyword)) {
+                score += DESCRIPTION_WEIGHT;
+            }
+            return score;
+        }
+    }
+
+    /**
+     * 不可变索引
+     */
+    public static final class ProductIndex {
+        private final Map<Integer, FinancialProduct> products;
+        private final Map<Integer, IndexedProduct> indexed = new HashMap<>();
+        // 单字/二元组 -> 产品ID（覆盖名称、描述、标签）
+        private final Map<String, Set<Integer>> gramIndex = new HashMap<>();
+        // 归一化标签 -> 产品ID
+        private final Map<String, Set<Integer>> tagIndex = new HashMap<>();
+        // 归一化名称 -> 产品ID，用于前缀查询
+        private final NavigableMap<String, Set<Integer>> nameIndex = new TreeMap<>();
+
+        private ProductIndex(Collection<FinancialProduct> products) {
+            Map<Integer, FinancialProduct> byId = new LinkedHashMap<>();
+            for (FinancialProduct product : products) {
+                byId.put(product.getFpId(), product);
+            }
+            this.products = Collections.unmodifiableMap(byId);
+            for (FinancialProduct product : byId.values()) {
+                IndexedProduct item = new IndexedProduct(product);
+                Integer fpId = product.getFpId();
+                indexed.put(fpId, item);
+                addAll(gramIndex, grams(item.name), fpId);
+                addAll(gramIndex, grams(item.description), fpId);
+                for (String tag : item.tags) {
+                    addAll(gramIndex, grams(tag), fpId);
+                    tagIndex.computeIfAbsent(tag, k -> new HashSet<>()).add(fpId);
+                }
+                nameIndex.computeIfAbsent(item.name, k -> new HashSet<>()).add(fpId);
+            }
+        }
+
+        // 关键词的候选产品：单字直接查倒排表，多字取各二元组倒排表的交集（最终由score精确校验）
+        private Set<Integer> lookup(String keyword) {
+            if (keyword.length() == 1) {
+                return gramIndex.getOrDefault(keyword, Collections.emptySet());
+            }
+            Set<Integer> result = null;
+            for (int i = 0; i + 2 <= keyword.length(); i++) {
+                Set<Integer> ids = gramIndex.getOrDefault(keyword.substring(i, i + 2), Collections.emptySet());
+                result = intersect(result, ids);
+                if (result.isEmpty()) {
+                    break;
+                }
+            }
+            return result;
+        }
+
+        private static void addAll(Map<String, Set<Integer>> index, Collection<String> keys, Integer fpId) {
+            for (String key : keys) {
+                index.computeIfAbsent(key, k -> new HashSet<>()).add(fpId);
+            }
+        }
+    }
+}
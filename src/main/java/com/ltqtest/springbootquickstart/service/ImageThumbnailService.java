@@ -0,0 +1,213 @@
+package com.ltqtest.springbootquickstart.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import jakarta.annotation.PreDestroy;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * 图片缩略图服务
+ * 原图保存后在后台线程池中生成不同尺寸的JPEG缩略图，与原图放在同一目录，
+ * 文件名为 原文件名_尺寸名.jpg，列表页等场景可以直接使用缩略图减少流量。
+ * 缩略图是否存在记录在内存中（生成、删除时更新，未记录的首次查询磁盘），列表接口不必每次访问文件系统
+ */
+@Service
+public class ImageThumbnailService {
+
+    private static final Logger logger = Logger.getLogger(ImageThumbnailService.class.getName());
+
+    // 商品图片缩略图尺寸（最长边像素），按声明顺序生成和返回
+    public static final Map<String, Integer> PRODUCT_SIZES;
+    // 头像缩略图尺寸（最长边像素）
+    public static final Map<String, Integer> AVATAR_SIZES;
+
+    static {
+        Map<String, Integer> productSizes = new LinkedHashMap<>();
+        productSizes.put("list", 240);
+        productSizes.put("detail", 720);
+        PRODUCT_SIZES = Collections.unmodifiableMap(productSizes);
+        Map<String, Integer> avatarSizes = new LinkedHashMap<>();
+        avatarSizes.put("avatar", 128);
+        AVATAR_SIZES = Collections.unmodifiableMap(avatarSizes);
+    }
+
+    // 缩略图JPEG压缩质量
+    private static final float JPEG_QUALITY = 0.8f;
+
+    @Value("${file.upload.base-path}")
+    private String uploadBasePath;
+
+    @Value("${file.upload.access-base-url}")
+    private String accessBaseUrl;
+
+    private final ThreadPoolExecutor executor;
+
+    // 缩略图绝对路径 -> 是否存在
+    private final Cache<String, Boolean> thumbnailExists;
+
+    public ImageThumbnailService(@Value("${file.upload.thumbnail-threads:2}") int threads,
+                                 @Value("${file.upload.thumbnail-queue-size:200}") int queueSize,
+                                 @Value("${file.upload.thumbnail-cache-size:100000}") long cacheSize) {
+        this.thumbnailExists = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .build();
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-thumbnail-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 提交缩略图生成任务，队列已满时放弃生成（列表页会退回使用原图）
+     * @param original 原图文件
+     * @param sizes 需要生成的尺寸
+     */
+    public void submit(File original, Map<String, Integer> sizes) {
+        try {
+            executor.execute(() -> generate(original, sizes));
+        } catch (RejectedExecutionException e) {
+            logger.warning("缩略图任务队列已满，跳过生成: " + original.getAbsolutePath());
+        }
+    }
+
+    /**
+     * 根据原图URL获取已生成的缩略图URL
+     * @param imageUrl 原图URL
+     * @param sizes 尺寸
+     * @return 尺寸名到缩略图URL的映射，只包含已生成的缩略图
+     */
+    public Map<String, String> getThumbnailUrls(String imageUrl, Map<String, Integer> sizes) {
+        Map<String, String> urls = new LinkedHashMap<>();
+        if (imageUrl == null || !imageUrl.startsWith(accessBaseUrl)) {
+            return urls;
+        }
+        String relativePath = imageUrl.substring(accessBaseUrl.length());
+        File original = new File(uploadBasePath + relativePath);
+        String urlPrefix = imageUrl.substring(0, imageUrl.lastIndexOf('/') + 1);
+        for (String sizeName : sizes.keySet()) {
+            File thumbnail = getThumbnailFile(original, sizeName);
+            if (thumbnailExists.get(thumbnail.getAbsolutePath(), path -> thumbnail.isFile())) {
+                urls.put(sizeName, urlPrefix + thumbnail.getName());
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * 删除原图对应的所有缩略图
+     * @param original 原图文件
+     * @param sizes 尺寸
+     */
+    public void deleteThumbnails(File original, Map<String, Integer> sizes) {
+        for (String sizeName : sizes.keySet()) {
+            File thumbnail = getThumbnailFile(original, sizeName);
+            if (thumbnail.isFile() && !thumbnail.delete()) {
+                logger.warning("删除缩略图失败: " + thumbnail.getAbsolutePath());
+            }
+            thumbnailExists.invalidate(thumbnail.getAbsolutePath());
+        }
+    }
+
+    /**
+     * 获取缩略图文件
+     * @param original 原图文件
+     * @param sizeName 尺寸名
+     * @return 缩略图文件
+     */
+    public File getThumbnailFile(File original, String sizeName) {
+        String baseName = StringUtils.stripFilenameExtension(original.getName());
+        return new File(original.getParentFile(), baseName + "_" + sizeName + ".jpg");
+    }
+
+    // 生成所有尺寸的缩略图
+    private void generate(File original, Map<String, Integer> sizes) {
+        try {
+            BufferedImage source = ImageIO.read(original);
+            if (source == null) {
+                logger.warning("无法识别图片格式，跳过生成缩略图: " + original.getAbsolutePath());
+                return;
+            }
+            for (Map.Entry<String, Integer> size : sizes.entrySet()) {
+                File target = getThumbnailFile(original, size.getKey());
+                writeJpeg(resize(source, size.getValue()), target);
+                thumbnailExists.put(target.getAbsolutePath(), Boolean.TRUE);
+            }
+            logger.info("缩略图生成完成: " + original.getAbsolutePath());
+        } catch (Exception e) {
+            logger.severe("生成缩略图失败: " + original.getAbsolutePath() + "，" + e.getMessage());
+        }
+    }
+
+    // 按最长边等比缩放，小图不放大；透明背景填充为白色
+    private BufferedImage resize(BufferedImage source, int maxEdge) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double scale = Math.min(1.0, (double) maxEdge / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+
+        BufferedImage target = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, targetWidth, targetHeight);
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, targetWidth, targetHeight, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    // 先写入临时文件再重命名，避免客户端读到写了一半的缩略图
+    private void writeJpeg(BufferedImage image, File target) throws IOException {
+        File tmp = new File(target.getParentFile(), target.getName() + ".tmp");
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(tmp)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,141 @@
+package com.ltqtest.springbootquickstart.service;
+
+import com.ltqtest.springbootquickstart.entity.Purchase;
+import com.ltqtest.springbootquickstart.entity.ShoppingCart;
+import com.ltqtest.springbootquickstart.repository.ProductRepository;
+import com.ltqtest.springbootquickstart.repository.PurchaseRepository;
+import com.ltqtest.springbootquickstart.repository.ShoppingCartRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * 商品库存服务
+ * 库存的扣减与回补都通过带条件的UPDATE语句在数据库中原子完成，
+ * 订单状态流转同样以原状态为条件更新，避免并发下单时的更新丢失、超卖以及重复回补
+ */
+@Service
+public class InventoryService {
+
+    private static final Logger logger = Logger.getLogger(InventoryService.class.getName());
+
+    // 订单状态：已付款但库存不足，等待退款或人工处理（不会被发货，也没有占用库存）
+    public static final int STATUS_PAID_OUT_OF_STOCK = 8;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private PurchaseRepository purchaseRepository;
+
+    @Autowired
+    private ShoppingCartRepository shoppingCartRepository;
+
+    @Autowired
+    private ProductCacheService productCacheService;
+
+    /**
+     * 扣减库存
+     * @param productId 商品ID
+     * @param amount 数量
+     * @return 是否扣减成功（库存不足时返回false）
+     */
+    public boolean reserve(Integer productId, Integer amount) {
+        if (productId == null || amount == null || amount <= 0) {
+            return false;
+        }
+        boolean deducted = productRepository.deductStock(productId, amount) > 0;
+        if (deducted) {
+            productCacheService.evict(productId);
+        }
+        return deducted;
+    }
+
+    /**
+     * 回补库存
+     * @param productId 商品ID
+     * @param amount 数量
+     */
+    public void release(Integer productId, Integer amount) {
+        if (productId == null || amount == null || amount <= 0) {
+            return;
+        }
+        productRepository.restoreStock(productId, amount);
+        productCacheService.evict(productId);
+    }
+
+    /**
+     * 支付成功后确认订单：状态由2（待支付）改为3（已付款待发货）并扣减库存
+     * 支付宝重复回调时订单状态已不是2，不会重复扣减。
+     * 此时买家已经付款，库存不足时不能直接取消订单，而是标记为8（已付款库存不足），等待退款或人工处理
+     * @param purchase 购买记录
+     * @return 库存不足导致订单需要退款时返回false
+     */
+    @Transactional
+    public boolean confirmPayment(Purchase purchase) {
+        LocalDateTime now = LocalDateTime.now();
+        int updated = purchaseRepository.updateStatusByPurchaseId(purchase.getPurchaseId(), List.of(2), 3, now);
+        if (updated == 0) {
+            return true;
+        }
+        if (!reserve(purchase.getProductId(), purchase.getAmount())) {
+            // 库存不足，订单保留已付款状态并标记为待退款
+            purchaseRepository.updateStatusByPurchaseId(purchase.getPurchaseId(), List.of(3), STATUS_PAID_OUT_OF_STOCK, now);
+            logger.severe("商品ID为" + purchase.getProductId() + "的库存不足，已付款的购买记录" + purchase.getPurchaseId()
+                    + "已标记为待退款，需要人工处理");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 从购物车结算：扣减库存、生成购买记录并删除购物车项
+     * @param cartItem 购物车项
+     * @param price 商品单价
+     * @return 生成的购买记录，库存不足时返回null
+     */
+    @Transactional
+    public Purchase checkoutCart(ShoppingCart cartItem, double price) {
+        Integer amount = cartItem.getAmount();
+        if (!reserve(cartItem.getProductId(), amount)) {
+            return null;
+        }
+
+        // 创建购买记录
+        Purchase purchase = new Purchase();
+        purchase.setProductId(cartItem.getProductId());
+        purchase.setUserId(cartItem.getUserId());
+        purchase.setAmount(amount);
+        purchase.setGetAddress(cartItem.getGetAddress());
+        purchase.setTotalPrice((double) amount * price);
+        purchase.setStatus(3);
+        Purchase savedPurchase = purchaseRepository.save(purchase);
+
+        // 从购物车中删除该商品
+        shoppingCartRepository.delete(cartItem);
+        return savedPurchase;
+    }
+
+    /**
+     * 修改订单状态并回补库存（取消订单、退货时使用）
+     * @param purchase 购买记录
+     * @param fromStatuses 允许的原状态
+     * @param toStatus 目标状态
+     * @return 订单状态已被其他请求修改时返回false，此时不回补库存
+     */
+    @Transactional
+    public boolean cancelAndRestock(Purchase purchase, Collection<Integer> fromStatuses, Integer toStatus) {
+        int updated = purchaseRepository.updateStatusByPurchaseId(purchase.getPurchaseId(), fromStatuses, toStatus, LocalDateTime.now());
+        if (updated == 0) {
+            return false;
+        }
+        release(purchase.getProductId(), purchase.getAmount());
+        return true;
+    }
+}
@@ -0,0 +1,80 @@
+package com.ltqtest.springbootquickstart.service;
+
+import com.ltqtest.springbootquickstart.entity.LoanApplication;
+import com.ltqtest.springbootquickstart.repository.LoanApplicationRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 贷款审批队列服务
+ * 审批人先领取（claim）待审批申请，领取有租期，租期内其他审批人看不到也无法审批该申请；
+ * 租期到期未处理的申请会重新出现在队列中，多个审批人可以并发处理队列而不会重复审批
+ */
+@Service
+public class LoanApprovalQueueService {
+
+    // 待审批状态
+    private static final int PENDING_STATUS = 1;
+
+    @Autowired
+    private LoanApplicationRepository loanApplicationRepository;
+
+    @Value("${loan.approval.claim-lease-minutes:15}")
+    private long claimLeaseMinutes;
+
+    /**
+     * 查询审批队列（未被领取、领取已过期或由自己领取的待审批申请）
+     * @param approverId 审批人ID
+     * @param lastApplyTime 上一页最后一条的申请时间，为空时查询第一页
+     * @param lastApplicationId 上一页最后一条的申请ID
+     * @param size 每页条数
+     * @return 贷款申请列表（已抓取产品信息）
+     */
+    public List<LoanApplication> findQueue(Integer approverId, Date lastApplyTime, Integer lastApplicationId, int size) {
+        return loanApplicationRepository.findApprovalQueue(PENDING_STATUS, approverId, new Date(),
+                lastApplyTime, lastApplicationId, PageRequest.of(0, size));
+    }
+
+    /**
+     * 领取待审批申请，自己已领取时续期
+     * @param applicationId 贷款申请ID
+     * @param approverId 审批人ID
+     * @return 领取到期时间，申请不存在、不是待审批状态或已被他人领取时返回null
+     */
+    public Date claim(Integer applicationId, Integer approverId) {
+        Date now = new Date();
+        Date expireTime = new Date(now.getTime() + TimeUnit.MINUTES.toMillis(claimLeaseMinutes));
+        int updated = loanApplicationRepository.claim(applicationId, approverId, now, expireTime);
+        return updated > 0 ? expireTime : null;
+    }
+
+    /**
+     * 释放自己领取的申请
+     * @param applicationId 贷款申请ID
+     * @param approverId 审批人ID
+     * @return 是否释放成功
+     */
+    public boolean release(Integer applicationId, Integer approverId) {
+        return loanApplicationRepository.releaseClaim(applicationId, approverId) > 0;
+    }
+
+    /**
+     * 判断申请是否被其他审批人领取且尚未过期
+     * @param application 贷款申请
+     * @param approverId 当前审批人ID
+     * @return 是否被他人领取
+     */
+    public boolean isClaimedByOther(LoanApplication application, Integer approverId) {
+        return application.getClaimedBy() != null
+                && !application.getClaimedBy().equals(approverId)
+                && application.getClaimExpireTime() != null
+                && application.getClaimExpireTime().after(new Date());
+    }
+}
@@ -0,0 +1,377 @@
+package com.ltqtest.springbootquickstart.service;
+
+import com.ltqtest.springbootquickstart.entity.LoanApplication;
+import com.ltqtest.springbootquickstart.entity.LoanDocument;
+import com.ltqtest.springbootquickstart.repository.LoanApplicationRepository;
+import com.ltqtest.springbootquickstart.repository.LoanDocumentRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 贷款申请材料存储服务
+ * 上传文件边读边写入临时文件，同时计算SHA-256、校验大小和文件头类型，不在内存中整体缓冲；
+ * 写完后按SHA-256重命名为 存储目录/前2位/3-4位/完整哈希，相同内容的文件只保存一份。
+ * 申请保存失败时不立即删除文件（并发的其他申请可能正在复用同一文件），
+ * 由定时任务删除超过宽限期且没有材料记录引用的文件；复用已有文件时会刷新其修改时间，保证在宽限期内不被删除
+ */
+@Service
+public class LoanDocumentService {
+
+    private static final Logger logger = Logger.getLogger(LoanDocumentService.class.getName());
+
+    // 识别文件类型需要的文件头字节数
+    private static final int HEADER_LENGTH = 8;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    // 清理未引用文件时每批查询的哈希数
+    private static final int SWEEP_BATCH_SIZE = 500;
+
+    // 存储文件名（SHA-256十六进制）
+    private static final Pattern BLOB_NAME = Pattern.compile("[0-9a-f]{64}");
+
+    @Autowired
+    private LoanDocumentRepository loanDocumentRepository;
+
+    @Autowired
+    private LoanApplicationRepository loanApplicationRepository;
+
+    @Value("${file.upload.base-path}")
+    private String uploadBasePath;
+
+    @Value("${file.upload.loan-document-path:loan-documents/}")
+    private String loanDocumentPath;
+
+    @Value("${loan.document.max-size-mb:10}")
+    private long maxSizeMb;
+
+    @Value("${loan.document.orphan-grace-hours:24}")
+    private long orphanGraceHours;
+
+    /**
+     * 流式保存上传的材料
+     * @param file 上传文件
+     * @return 存储结果
+     * @throws IllegalArgumentException 文件为空、超过大小限制或类型不支持
+     * @throws IOException 写入失败
+     */
+    public StoredFile store(MultipartFile file) throws IOException {
+        Path root = storageRoot();
+        Files.createDirectories(root);
+        Path tmp = Files.createTempFile(root, "upload-", ".tmp");
+
+        long maxBytes = maxSizeMb * 1024 * 1024;
+        MessageDigest digest = newSha256();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        byte[] header = new byte[HEADER_LENGTH];
+        int headerLength = 0;
+        String contentType = null;
+        long size = 0;
+
+        try (InputStream in = file.getInputStream(); OutputStream out = Files.newOutputStream(tmp)) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                // 读满文件头后立即识别类型，不支持的类型不再继续读取
+                if (contentType == null && headerLength < HEADER_LENGTH) {
+                    int copy = Math.min(n, HEADER_LENGTH - headerLength);
+                    System.arraycopy(buffer, 0, header, headerLength, copy);
+                    headerLength += copy;
+                    if (headerLength == HEADER_LENGTH) {
+                        contentType = requireContentType(header, headerLength, file.getOriginalFilename());
+                    }
+                }
+                size += n;
+                if (size > maxBytes) {
+                    throw new IllegalArgumentException("文件大小超过限制（" + maxSizeMb + "MB）：" + file.getOriginalFilename());
+                }
+                digest.update(buffer, 0, n);
+                out.write(buffer, 0, n);
+            }
+            if (size == 0) {
+                throw new IllegalArgumentException("文件内容为空：" + file.getOriginalFilename());
+            }
+            if (contentType == null) {
+                contentType = requireContentType(header, headerLength, file.getOriginalFilename());
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+
+        String sha256 = HexFormat.of().formatHex(digest.digest());
+        Path target = blobPath(sha256);
+        if (Files.exists(target)) {
+            // 内容已存在，直接复用
+            reuse(tmp, target);
+        } else {
+            Files.createDirectories(target.getParent());
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // 并发上传了相同内容
+                reuse(tmp, target);
+            }
+        }
+        return new StoredFile(sha256, file.getOriginalFilename(), contentType, size);
+    }
+
+    /**
+     * 保存贷款申请及其材料记录（同一申请中内容相同的材料只记录一次）
+     * @param application 贷款申请
+     * @param storedFiles 已存储的材料
+     * @return 保存后的贷款申请
+     */
+    @Transactional
+    public LoanApplication saveApplication(LoanApplication application, List<StoredFile> storedFiles) {
+        LoanApplication savedApplication = loanApplicationRepository.save(application);
+        Date now = new Date();
+        Set<String> seen = new HashSet<>();
+        List<LoanDocument> documents = new ArrayList<>();
+        for (StoredFile storedFile : storedFiles) {
+            if (!seen.add(storedFile.getSha256())) {
+                continue;
+            }
+            LoanDocument document = new LoanDocument();
+            document.setApplicationId(savedApplication.getApplicationId());
+            document.setUserId(savedApplication.getUserId());
+            document.setSha256(storedFile.getSha256());
+            document.setOriginalName(storedFile.getOriginalName());
+            document.setContentType(storedFile.getContentType());
+            document.setSize(storedFile.getSize());
+            document.setUploadTime(now);
+            documents.add(document);
+        }
+        loanDocumentRepository.saveAll(documents);
+        return savedApplication;
+    }
+
+    /**
+     * 定时删除超过宽限期且没有材料记录引用的文件，以及遗留的临时文件
+     */
+    @Scheduled(initialDelayString = "${loan.document.orphan-sweep-interval-ms:21600000}",
+               fixedDelayString = "${loan.document.orphan-sweep-interval-ms:21600000}")
+    public void sweepOrphans() {
+        Path root = storageRoot();
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(orphanGraceHours);
+        int deleted = 0;
+        List<Path> batch = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(root, 3)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                if (!Files.isRegularFile(path) || !isOlderThan(path, cutoff)) {
+                    continue;
+                }
+                String name = path.getFileName().toString();
+                if (name.startsWith("upload-") && name.endsWith(".tmp")) {
+                    deleted += delete(path, cutoff) ? 1 : 0;
+                } else if (BLOB_NAME.matcher(name).matches()) {
+                    batch.add(path);
+                    if (batch.size() == SWEEP_BATCH_SIZE) {
+                        deleted += deleteUnreferenced(batch, cutoff);
+                        batch.clear();
+                    }
+                }
+            }
+            deleted += deleteUnreferenced(batch, cutoff);
+        } catch (IOException | RuntimeException e) {
+            logger.warning("清理未引用的贷款材料失败: " + e.getMessage());
+        }
+        if (deleted > 0) {
+            logger.info("清理未引用的贷款材料" + deleted + "个");
+        }
+    }
+
+    /**
+     * 查询贷款申请的材料列表
+     * @param applicationId 贷款申请ID
+     * @return 材料列表
+     */
+    public List<LoanDocument> findByApplicationId(Integer applicationId) {
+        return loanDocumentRepository.findByApplicationIdOrderByDocumentIdAsc(applicationId);
+    }
+
+    /**
+     * 根据ID查询材料
+     * @param documentId 材料ID
+     * @return 材料
+     */
+    public Optional<LoanDocument> findById(Integer documentId) {
+        return loanDocumentRepository.findById(documentId);
+    }
+
+    /**
+     * 获取材料对应的存储文件
+     * @param document 材料
+     * @return 存储文件
+     */
+    public File getFile(LoanDocument document) {
+        return blobPath(document.getSha256()).toFile();
+    }
+
+    // 复用已有文件：删除临时文件并刷新已有文件的修改时间，使其在本次申请提交前不会被当作未引用文件清理
+    private void reuse(Path tmp, Path target) throws IOException {
+        Files.deleteIfExists(tmp);
+        Files.setLastModifiedTime(target, FileTime.fromMillis(System.currentTimeMillis()));
+    }
+
+    private int deleteUnreferenced(List<Path> blobs, long cutoff) {
+        if (blobs.isEmpty()) {
+            return 0;
+        }
+        List<String> hashes = new ArrayList<>(blobs.size());
+        for (Path blob : blobs) {
+            hashes.add(blob.getFileName().toString());
+        }
+        Set<String> referenced = new HashSet<>(loanDocumentRepository.findReferencedSha256In(hashes));
+        int deleted = 0;
+        for (Path blob : blobs) {
+            if (!referenced.contains(blob.getFileName().toString()) && delete(blob, cutoff)) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    // 删除前再次检查修改时间，查询期间被复用的文件保留
+    private boolean delete(Path path, long cutoff) {
+        try {
+            return isOlderThan(path, cutoff) && Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warning("删除贷款材料文件失败: " + path + ", " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static boolean isOlderThan(Path path, long cutoff) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis() < cutoff;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private Path storageRoot() {
+        return Paths.get(uploadBasePath, loanDocumentPath);
+    }
+
+    private Path blobPath(String sha256) {
+        return storageRoot().resolve(sha256.substring(0, 2)).resolve(sha256.substring(2, 4)).resolve(sha256);
+    }
+
+    private MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("当前环境不支持SHA-256", e);
+        }
+    }
+
+    private String requireContentType(byte[] header, int length, String originalName) {
+        String contentType = detectContentType(header, length, originalName);
+        if (contentType == null) {
+            logger.warning("拒绝不支持的贷款材料类型: " + originalName);
+            throw new IllegalArgumentException("不支持的文件类型，仅支持PDF、JPG、PNG、DOCX、XLSX：" + originalName);
+        }
+        return contentType;
+    }
+
+    // 根据文件头识别类型；DOCX/XLSX为ZIP格式，需结合扩展名区分
+    private static String detectContentType(byte[] header, int length, String originalName) {
+        if (startsWith(header, length, 0x25, 0x50, 0x44, 0x46)) {
+            return "application/pdf";
+        }
+        if (startsWith(header, length, 0xFF, 0xD8, 0xFF)) {
+            return "image/jpeg";
+        }
+        if (startsWith(header, length, 0x89, 0x50, 0x4E, 0x47, 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return "image/png";
+        }
+        if (startsWith(header, length, 0x50, 0x4B, 0x03, 0x04) && originalName != null) {
+            String name = originalName.toLowerCase(Locale.ROOT);
+            if (name.endsWith(".docx")) {
+                return "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+            }
+            if (name.endsWith(".xlsx")) {
+                return "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+            }
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] header, int length, int... magic) {
+        if (length < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if ((header[i] & 0xFF) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 已存储的上传文件
+     */
+    public static class StoredFile {
+        private final String sha256;
+        private final String originalName;
+        private final String contentType;
+        private final long size;
+
+        public StoredFile(String sha256, String originalName, String contentType, long size) {
+            this.sha256 = sha256;
+            this.originalName = originalName;
+            this.contentType = contentType;
+            this.size = size;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+
+        public String getOriginalName() {
+            return originalName;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.ltqtest.springbootquickstart.service;
+
+import com.ltqtest.springbootquickstart.repository.LoanApplicationRepository;
+import com.ltqtest.springbootquickstart.repository.RepaymentPlanRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * 贷款逾期扫描服务
+ * 定时按到期日期分批扫描已到期未还清的还款计划，批量将计划和对应的贷款申请标记为逾期，
+ * 查询接口因此无需在读取时修改数据。每批在独立事务中执行，单次扫描的批数有上限
+ */
+@Service
+public class LoanOverdueSweepService {
+
+    private static final Logger logger = Logger.getLogger(LoanOverdueSweepService.class.getName());
+
+    @Autowired
+    private RepaymentPlanRepository repaymentPlanRepository;
+
+    @Autowired
+    private LoanApplicationRepository loanApplicationRepository;
+
+    @Value("${loan.overdue-sweep.batch-size:500}")
+    private int batchSize;
+
+    @Value("${loan.overdue-sweep.max-batches:100}")
+    private int maxBatches;
+
+    private final TransactionTemplate transactionTemplate;
+
+    // 累计统计
+    private final AtomicLong runCount = new AtomicLong();
+    private final AtomicLong totalPlansMarked = new AtomicLong();
+    private final AtomicLong totalApplicationsMarked = new AtomicLong();
+    private volatile int lastPlansMarked;
+    private volatile int lastApplicationsMarked;
+    private volatile long lastDurationMs;
+    private volatile Date lastRunTime;
+
+    public LoanOverdueSweepService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * 定时扫描逾期还款计划
+     */
+    @Scheduled(initialDelayString = "${loan.overdue-sweep.initial-delay-ms:60000}",
+               fixedDelayString = "${loan.overdue-sweep.interval-ms:600000}")
+    public void sweep() {
+        long start = System.currentTimeMillis();
+        Date now = new Date();
+        int plansMarked = 0;
+        int applicationsMarked = 0;
+        try {
+            for (int batch = 0; batch < maxBatches; batch++) {
+                int[] counts = transactionTemplate.execute(status -> sweepBatch(now));
+                // 没有可标记的计划时结束，避免反复处理同一批数据
+                if (counts == null || counts[1] == 0) {
+                    break;
+                }
+                plansMarked += counts[1];
+                applicationsMarked += counts[2];
+                if (counts[0] < batchSize) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            logger.severe("逾期扫描失败: " + e.getMessage());
+        } finally {
+            lastDurationMs = System.currentTimeMillis() - start;
+            lastRunTime = now;
+            lastPlansMarked = plansMarked;
+            lastApplicationsMarked = applicationsMarked;
+            runCount.incrementAndGet();
+            totalPlansMarked.addAndGet(plansMarked);
+            totalApplicationsMarked.addAndGet(applicationsMarked);
+        }
+        if (plansMarked > 0 || applicationsMarked > 0) {
+            logger.info("逾期扫描完成：标记逾期还款计划" + plansMarked + "条，逾期贷款申请" + applicationsMarked
+                    + "条，耗时" + lastDurationMs + "ms");
+        }
+    }
+
+    /**
+     * 获取扫描统计
+     * @return 执行次数、累计及最近一次标记的计划数和申请数、最近一次耗时
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("runCount", runCount.get());
+        data.put("totalPlansMarked", totalPlansMarked.get());
+        data.put("totalApplicationsMarked", totalApplicationsMarked.get());
+        data.put("lastPlansMarked", lastPlansMarked);
+        data.put("lastApplicationsMarked", lastApplicationsMarked);
+        data.put("lastDurationMs", lastDurationMs);
+        data.put("lastRunTime", lastRunTime);
+        return data;
+    }
+
+    // 处理一批：返回[本批查询到的计划数, 标记的计划数, 标记的申请数]
+    private int[] sweepBatch(Date now) {
+        List<Object[]> candidates = repaymentPlanRepository.findOverdueCandidates(now, PageRequest.of(0, batchSize));
+        if (candidates.isEmpty()) {
+            return new int[]{0, 0, 0};
+        }
+        List<Integer> planIds = new ArrayList<>(candidates.size());
+        Set<Integer> applicationIds = new LinkedHashSet<>();
+        for (Object[] row : candidates) {
+            planIds.add((Integer) row[0]);
+            applicationIds.add((Integer) row[1]);
+        }
+        int plans = repaymentPlanRepository.markOverdue(planIds, now);
+        int applications = loanApplicationRepository.markOverdue(applicationIds);
+        return new int[]{candidates.size(), plans, applications};
+    }
+}
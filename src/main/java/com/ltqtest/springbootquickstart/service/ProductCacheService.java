@@ -0,0 +1,88 @@
+package com.ltqtest.springbootquickstart.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.ltqtest.springbootquickstart.entity.Product;
+import com.ltqtest.springbootquickstart.repository.ProductRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 商品信息本地缓存
+ * 按商品ID缓存热点商品，容量和过期时间可配置；商品被修改后由写入方调用evict失效
+ * 注意：返回的Product为共享实例，只能用于读取，需要修改商品时请直接从ProductRepository查询
+ */
+@Service
+public class ProductCacheService {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private final Cache<Integer, Product> cache;
+
+    public ProductCacheService(@Value("${product.cache.max-size:10000}") long maxSize,
+                               @Value("${product.cache.ttl-seconds:300}") long ttlSeconds) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 根据商品ID查询商品，未命中时从数据库加载（不存在的商品不会被缓存）
+     * @param productId 商品ID
+     * @return 商品，不存在时返回null
+     */
+    public Product findByProductId(Integer productId) {
+        if (productId == null) {
+            return null;
+        }
+        return cache.get(productId, productRepository::findByProductId);
+    }
+
+    /**
+     * 使某个商品的缓存失效
+     * 在事务中调用时延迟到事务提交后执行，避免提交前被其他请求重新加载旧数据
+     * @param productId 商品ID
+     */
+    public void evict(Integer productId) {
+        if (productId == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(productId);
+                }
+            });
+        } else {
+            cache.invalidate(productId);
+        }
+    }
+
+    /**
+     * 获取缓存命中统计
+     * @return 命中次数、未命中次数、命中率、淘汰次数、当前条目数
+     */
+    public Map<String, Object> stats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> data = new HashMap<>();
+        data.put("hitCount", stats.hitCount());
+        data.put("missCount", stats.missCount());
+        data.put("hitRate", stats.hitRate());
+        data.put("evictionCount", stats.evictionCount());
+        data.put("size", cache.estimatedSize());
+        return data;
+    }
+}
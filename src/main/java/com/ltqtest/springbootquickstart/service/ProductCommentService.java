@@ -0,0 +1,95 @@
+package com.ltqtest.springbootquickstart.service;
+
+import com.ltqtest.springbootquickstart.repository.ProductCommentRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 商品评论服务
+ * 删除评论时按层（广度优先）收集整棵子评论树的ID，每层只查询一次子评论ID，
+ * 最后在同一个事务中按批执行 DELETE ... WHERE product_comment_id IN (...)，提交后从商品评论聚合中扣除
+ */
+@Service
+public class ProductCommentService {
+
+    // IN 列表单批最多包含的ID数
+    private static final int BATCH_SIZE = 500;
+
+    @Autowired
+    private ProductCommentRepository productCommentRepository;
+
+    @Autowired
+    private CommentLikeService commentLikeService;
+
+    @Autowired
+    private ProductEngagementService productEngagementService;
+
+    /**
+     * 删除评论及其所有子评论
+     * @param productCommentId 评论ID
+     * @return 被删除的评论ID（包含该评论本身）
+     */
+    @Transactional
+    public List<Long> deleteCommentTree(Long productCommentId) {
+        List<Long> ids = collectSubtreeIds(productCommentId);
+        // 删除前按商品统计被删除评论的数量、点赞数和最晚评论时间
+        Map<Integer, DeletedStats> deleted = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            List<Long> batch = ids.subList(from, Math.min(from + BATCH_SIZE, ids.size()));
+            for (Object[] row : productCommentRepository.aggregateByIds(batch)) {
+                deleted.computeIfAbsent((Integer) row[0], id -> new DeletedStats())
+                        .add(((Number) row[1]).longValue(), ((Number) row[2]).longValue(), (LocalDateTime) row[3]);
+            }
+            productCommentRepository.deleteByProductCommentIdIn(batch);
+        }
+        commentLikeService.evict(ids);
+        deleted.forEach((productId, stats) ->
+                productEngagementService.onCommentsDeleted(productId, stats.count, stats.likes, stats.latest));
+        return ids;
+    }
+
+    // 从给定评论开始逐层查询子评论ID，已访问的ID不再展开，避免异常数据形成环时死循环
+    private List<Long> collectSubtreeIds(Long productCommentId) {
+        Set<Long> visited = new LinkedHashSet<>();
+        visited.add(productCommentId);
+        List<Long> level = List.of(productCommentId);
+        while (!level.isEmpty()) {
+            List<Long> next = new ArrayList<>();
+            for (int from = 0; from < level.size(); from += BATCH_SIZE) {
+                List<Long> parents = level.subList(from, Math.min(from + BATCH_SIZE, level.size()));
+                for (Long childId : productCommentRepository.findIdsByRootCommentIdIn(parents)) {
+                    if (visited.add(childId)) {
+                        next.add(childId);
+                    }
+                }
+            }
+            level = next;
+        }
+        return new ArrayList<>(visited);
+    }
+
+    // 单个商品被删除评论的统计
+    private static class DeletedStats {
+        private long count;
+        private long likes;
+        private LocalDateTime latest;
+
+        private void add(long count, long likes, LocalDateTime latest) {
+            this.count += count;
+            this.likes += likes;
+            if (this.latest == null || (latest != null && latest.isAfter(this.latest))) {
+                this.latest = latest;
+            }
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.ltqtest.springbootquickstart.service;
+
+import com.ltqtest.springbootquickstart.repository.ProductCommentRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * 商品评论互动聚合服务（内存物化视图）
+ * 按商品ID保存评论数、评论总点赞数和最新评论时间，启动时用一次分组查询构建，
+ * 之后由发表评论、删除评论和点赞写回增量更新，列表接口直接读取，不再按请求聚合评论表。
+ * 点赞数在数据库中不小于0，对0赞评论取消点赞会让聚合值略有偏差，定时全量重建用于校正。
+ * 重建期间的增量更新会记录下来，在新视图替换旧视图前重放到新视图上，不会因替换而丢失
+ */
+@Service
+public class ProductEngagementService {
+
+    private static final Logger logger = Logger.getLogger(ProductEngagementService.class.getName());
+
+    // IN 列表单批最多包含的ID数
+    private static final int BATCH_SIZE = 500;
+
+    @Autowired
+    private ProductCommentRepository productCommentRepository;
+
+    private volatile Map<Integer, Engagement> view = new ConcurrentHashMap<>();
+
+    // 增量更新持读锁，替换视图持写锁
+    private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+
+    // 重建期间应用过的增量更新，为null表示未在重建
+    private volatile Queue<Consumer<Map<Integer, Engagement>>> journal;
+
+    /**
+     * 启动时构建视图
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        rebuild();
+    }
+
+    /**
+     * 定时全量重建视图
+     */
+    @Scheduled(initialDelayString = "${product.engagement.rebuild-interval-ms:600000}",
+               fixedDelayString = "${product.engagement.rebuild-interval-ms:600000}")
+    public synchronized void rebuild() {
+        // 先开始记录再查询；查询开始前已提交、但增量更新在记录开始后才执行的极少数变化会被重复计入，由下次重建校正
+        journal = new ConcurrentLinkedQueue<>();
+        try {
+            Map<Integer, Engagement> rebuilt = new ConcurrentHashMap<>();
+            for (Object[] row : productCommentRepository.aggregateByProduct()) {
+                rebuilt.put((Integer) row[0], new Engagement(((Number) row[1]).longValue(),
+                        ((Number) row[2]).longValue(), (LocalDateTime) row[3]));
+            }
+            swapLock.writeLock().lock();
+            try {
+                for (Consumer<Map<Integer, Engagement>> update : journal) {
+                    update.accept(rebuilt);
+                }
+                view = rebuilt;
+            } finally {
+                journal = null;
+                swapLock.writeLock().unlock();
+            }
+        } catch (Exception e) {
+            journal = null;
+            logger.warning("商品评论聚合重建失败，继续使用旧数据: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取商品的评论互动数据
+     * @param productId 商品ID
+     * @return 聚合数据，没有评论时各项为0
+     */
+    public Engagement get(Integer productId) {
+        return view.getOrDefault(productId, Engagement.EMPTY);
+    }
+
+    /**
+     * 发表评论后更新
+     * @param productId 商品ID
+     * @param sendTime 评论时间
+     */
+    public void onCommentAdded(Integer productId, LocalDateTime sendTime) {
+        update(target -> target.compute(productId, (id, current) -> {
+            Engagement base = current != null ? current : Engagement.EMPTY;
+            return new Engagement(base.commentCount() + 1, base.likeCount(), later(base.latestCommentTime(), sendTime));
+        }));
+    }
+
+    /**
+     * 删除评论后更新，在事务中调用时等提交后再更新
+     * @param productId 商品ID
+     * @param commentCount 删除的评论数
+     * @param likeCount 删除的评论的点赞数之和
+     * @param latestDeleted 删除的评论中最晚的评论时间
+     */
+    public void onCommentsDeleted(Integer productId, long commentCount, long likeCount, LocalDateTime latestDeleted) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyDeletion(productId, commentCount, likeCount, latestDeleted);
+                }
+            });
+        } else {
+            applyDeletion(productId, commentCount, likeCount, latestDeleted);
+        }
+    }
+
+    /**
+     * 点赞增量写回数据库后更新
+     * @param likeDeltas 评论ID到点赞增量
+     */
+    public void onLikesFlushed(Map<Long, Long> likeDeltas) {
+        List<Long> ids = new ArrayList<>(likeDeltas.keySet());
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            List<Long> batch = ids.subList(from, Math.min(from + BATCH_SIZE, ids.size()));
+            for (Object[] row : productCommentRepository.findProductIdsByIds(batch)) {
+                long delta = likeDeltas.get((Long) row[0]);
+                Integer productId = (Integer) row[1];
+                update(target -> target.computeIfPresent(productId, (id, current) -> new Engagement(current.commentCount(),
+                        Math.max(0, current.likeCount() + delta), current.latestCommentTime())));
+            }
+        }
+    }
+
+    private void applyDeletion(Integer productId, long commentCount, long likeCount, LocalDateTime latestDeleted) {
+        Engagement current = view.get(productId);
+        if (current == null) {
+            return;
+        }
+        // 删除了最新的评论时重新查询最新评论时间
+        LocalDateTime previous = current.latestCommentTime();
+        boolean latestRemoved = previous != null && latestDeleted != null && !latestDeleted.isBefore(previous);
+        LocalDateTime requeried = latestRemoved ? productCommentRepository.findLatestSendTime(productId) : null;
+        update(target -> target.computeIfPresent(productId, (id, engagement) -> {
+            long remaining = engagement.commentCount() - commentCount;
+            if (remaining <= 0) {
+                return null;
+            }
+            // 重新查询期间有新评论时保留新评论的时间
+            LocalDateTime latestCommentTime = engagement.latestCommentTime();
+            if (latestRemoved && (latestCommentTime == null || !latestCommentTime.isAfter(previous))) {
+                latestCommentTime = requeried;
+            }
+            return new Engagement(remaining, Math.max(0, engagement.likeCount() - likeCount), latestCommentTime);
+        }));
+    }
+
+    // 对当前视图应用增量更新，正在重建时同时记录下来
+    private void update(Consumer<Map<Integer, Engagement>> update) {
+        swapLock.readLock().lock();
+        try {
+            update.accept(view);
+            Queue<Consumer<Map<Integer, Engagement>>> current = journal;
+            if (current != null) {
+                current.add(update);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    private static LocalDateTime later(LocalDateTime a, LocalDateTime b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        return a.isAfter(b) ? a : b;
+    }
+
+    /**
+     * 单个商品的评论互动数据
+     * @param commentCount 评论数（含回复）
+     * @param likeCount 评论点赞总数
+     * @param latestCommentTime 最新评论时间，没有评论时为null
+     */
+    public record Engagement(long commentCount, long likeCount, LocalDateTime latestCommentTime) {
+
+        public static final Engagement EMPTY = new Engagement(0, 0, null);
+
+        /**
+         * 写入响应数据
+         * @param target 商品信息
+         */
+        public void putTo(Map<String, Object> target) {
+            target.put("commentCount", commentCount);
+            target.put("totalLikeCount", likeCount);
+            target.put("latestCommentTime", latestCommentTime);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.ltqtest.springbootquickstart.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ltqtest.springbootquickstart.common.Result;
+import com.ltqtest.springbootquickstart.entity.FinancialProduct;
+import com.ltqtest.springbootquickstart.entity.LoanStatus;
+import com.ltqtest.springbootquickstart.entity.News;
+import com.ltqtest.springbootquickstart.repository.FinancialProductRepository;
+import com.ltqtest.springbootquickstart.repository.LoanStatusRepository;
+import com.ltqtest.springbootquickstart.repository.NewsRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * 参考数据缓存服务
+ * 贷款状态、金融产品、新闻这几张小表读多写少，每张表在内存中保存一份不可变快照，
+ * 快照中包含各查询接口预先序列化好的JSON响应和ETag，接口直接返回内存中的字节并支持304，
+ * 金融产品快照还包含产品搜索使用的倒排索引；
+ * 写接口修改数据后调用对应的refresh方法重新加载并整体替换快照，另有定时刷新兜底直接修改数据库的情况
+ */
+@Service
+public class ReferenceDataCacheService {
+
+    private static final Logger logger = Logger.getLogger(ReferenceDataCacheService.class.getName());
+
+    @Autowired
+    private LoanStatusRepository loanStatusRepository;
+
+    @Autowired
+    private FinancialProductRepository financialProductRepository;
+
+    @Autowired
+    private NewsRepository newsRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private volatile LoanStatusSnapshot loanStatusSnapshot;
+    private volatile FinancialProductSnapshot financialProductSnapshot;
+    private volatile NewsSnapshot newsSnapshot;
+
+    /**
+     * 启动时加载全部快照
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        refreshAll();
+    }
+
+    /**
+     * 定时重新加载全部快照
+     */
+    @Scheduled(initialDelayString = "${reference-data.refresh-interval-ms:300000}",
+               fixedDelayString = "${reference-data.refresh-interval-ms:300000}")
+    public void refreshAll() {
+        try {
+            refreshLoanStatuses();
+            refreshFinancialProducts();
+            refreshNews();
+        } catch (Exception e) {
+            logger.warning("参考数据缓存刷新失败，继续使用旧快照: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 重新加载贷款状态快照
+     */
+    public synchronized void refreshLoanStatuses() {
+        List<LoanStatus> statusList = loanStatusRepository.findAll();
+        loanStatusSnapshot = new LoanStatusSnapshot(serialize(Result.success(200, "成功", statusList)));
+    }
+
+    /**
+     * 重新加载金融产品快照
+     */
+    public synchronized void refreshFinancialProducts() {
+        List<FinancialProduct> products = financialProductRepository.findAll();
+
+        // 首页金融产品展示接口的响应，标签转换为数组
+        List<Map<String, Object>> productList = new ArrayList<>();
+        for (FinancialProduct product : products) {
+            Map<String, Object> productMap = new HashMap<>();
+            productMap.put("fpId", product.getFpId());
+            productMap.put("fpName", product.getFpName());
+            productMap.put("fpDescription", product.getFpDescription());
+            productMap.put("annualRate", product.getAnnualRate());
+            productMap.put("tags", product.getTagsArray());
+            productList.add(productMap);
+        }
+        Map<String, Object> responseData = new HashMap<>();
+        responseData.put("products", productList);
+        Result<Map<String, Object>> homeResult = productList.isEmpty()
+                ? Result.success(200, "暂无金融产品数据", responseData)
+                : Result.success(responseData);
+
+        financialProductSnapshot = new FinancialProductSnapshot(
+                FinancialProductSearchService.buildIndex(products),
+                serialize(homeResult),
+                serialize(Result.success(products)));
+    }
+
+    /**
+     * 重新加载新闻快照
+     */
+    public synchronized void refreshNews() {
+        List<News> newsList = newsRepository.findAll(Sort.by(Sort.Direction.ASC, "newsId"));
+        Map<String, Object> responseData = new HashMap<>();
+        responseData.put("newsList", newsList);
+        newsSnapshot = new NewsSnapshot(serialize(Result.success(responseData)));
+    }
+
+    /**
+     * 获取金融产品搜索索引
+     * @return 与产品列表接口响应同一快照中的索引
+     */
+    public FinancialProductSearchService.ProductIndex getFinancialProductIndex() {
+        return financialProducts().index;
+    }
+
+    /**
+     * 贷款状态列表接口（GET /api/loan/status）的响应
+     */
+    public Payload getLoanStatusPayload() {
+        return loanStatuses().payload;
+    }
+
+    /**
+     * 贷款产品列表接口（GET /api/loan/products）的响应
+     */
+    public Payload getLoanProductPayload() {
+        return financialProducts().loanPayload;
+    }
+
+    /**
+     * 首页金融产品展示接口（GET /api/financing/products/）的响应
+     */
+    public Payload getHomeProductPayload() {
+        return financialProducts().homePayload;
+    }
+
+    /**
+     * 新闻轮播接口（GET /api/news）的响应
+     */
+    public Payload getNewsPayload() {
+        return news().payload;
+    }
+
+    private LoanStatusSnapshot loanStatuses() {
+        LoanStatusSnapshot snapshot = loanStatusSnapshot;
+        if (snapshot == null) {
+            synchronized (this) {
+                if (loanStatusSnapshot == null) {
+                    refreshLoanStatuses();
+                }
+                snapshot = loanStatusSnapshot;
+            }
+        }
+        return snapshot;
+    }
+
+    private FinancialProductSnapshot financialProducts() {
+        FinancialProductSnapshot snapshot = financialProductSnapshot;
+        if (snapshot == null) {
+            synchronized (this) {
+                if (financialProductSnapshot == null) {
+                    refreshFinancialProducts();
+                }
+                snapshot = financialProductSnapshot;
+            }
+        }
+        return snapshot;
+    }
+
+    private NewsSnapshot news() {
+        NewsSnapshot snapshot = newsSnapshot;
+        if (snapshot == null) {
+            synchronized (this) {
+                if (newsSnapshot == null) {
+                    refreshNews();
+                }
+                snapshot = newsSnapshot;
+            }
+        }
+        return snapshot;
+    }
+
+    private Payload serialize(Object response) {
+        try {
+            return new Payload(objectMapper.writeValueAsBytes(response));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("参考数据序列化失败", e);
+        }
+    }
+
+    /**
+     * 预先序列化的JSON响应，ETag为内容的SHA-256，内容不变时重新加载后ETag也不变
+     */
+    public static class Payload {
+        private final byte[] body;
+        private final String eTag;
+
+        private Payload(byte[] body) {
+            this.body = body;
+            this.eTag = "\"" + sha256(body) + "\"";
+        }
+
+        /**
+         * 构建响应，客户端每次需携带If-None-Match校验，内容未变化时由Spring直接返回304
+         * @return JSON响应
+         */
+        public ResponseEntity<byte[]> toResponseEntity() {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .eTag(eTag)
+                    .cacheControl(CacheControl.noCache())
+                    .body(body);
+        }
+
+        private static String sha256(byte[] body) {
+            try {
+                return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("当前环境不支持SHA-256", e);
+            }
+        }
+    }
+
+    private static class LoanStatusSnapshot {
+        private final Payload payload;
+
+        private LoanStatusSnapshot(Payload payload) {
+            this.payload = payload;
+        }
+    }
+
+    private static class FinancialProductSnapshot {
+        private final FinancialProductSearchService.ProductIndex index;
+        private final Payload homePayload;
+        private final Payload loanPayload;
+
+        private FinancialProductSnapshot(FinancialProductSearchService.ProductIndex index, Payload homePayload, Payload loanPayload) {
+            this.index = index;
+            this.homePayload = homePayload;
+            this.loanPayload = loanPayload;
+        }
+    }
+
+    private static class NewsSnapshot {
+        private final Payload payload;
+
+        private NewsSnapshot(Payload payload) {
+            this.payload = payload;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.ltqtest.springbootquickstart.service;
+
+import com.ltqtest.springbootquickstart.entity.LoanApplication;
+import com.ltqtest.springbootquickstart.entity.RepaymentPlan;
+import com.ltqtest.springbootquickstart.entity.RepaymentRecord;
+import com.ltqtest.springbootquickstart.repository.LoanApplicationRepository;
+import com.ltqtest.springbootquickstart.repository.RepaymentPlanRepository;
+import com.ltqtest.springbootquickstart.repository.RepaymentRecordRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 贷款还款服务
+ * 一次还款在同一个事务中完成：先锁定贷款申请行，使同一笔贷款的并发还款（如重复提交）串行执行，
+ * 再在内存中按到期日期依次冲抵还款计划，变更的计划通过saveAll批量写回，最后更新申请状态并写入还款记录
+ */
+@Service
+public class RepaymentService {
+
+    @Autowired
+    private LoanApplicationRepository loanApplicationRepository;
+
+    @Autowired
+    private RepaymentPlanRepository repaymentPlanRepository;
+
+    @Autowired
+    private RepaymentRecordRepository repaymentRecordRepository;
+
+    /**
+     * 还款
+     * @param applicationId 贷款申请ID
+     * @param amount 还款金额
+     * @param payDate 还款日期
+     * @return 还款后剩余应还金额
+     */
+    @Transactional
+    public float repay(Integer applicationId, float amount, Date payDate) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("还款金额必须大于0");
+        }
+
+        // 锁定贷款申请，后续对该贷款的还款需等待本事务提交
+        LoanApplication loanApplication = loanApplicationRepository.findByIdForUpdate(applicationId)
+                .orElseThrow(() -> new IllegalStateException("贷款申请不存在"));
+
+        List<RepaymentPlan> repaymentPlans = repaymentPlanRepository.findByApplicationIdOrderByDueDateAscPlanIdAsc(applicationId);
+        if (repaymentPlans.isEmpty()) {
+            throw new IllegalStateException("未找到还款计划");
+        }
+
+        // 计算总剩余还款金额
+        double totalRemainingToPay = repaymentPlans.stream()
+                .mapToDouble(RepaymentPlan::getRemainingAmount)
+                .sum();
+        if (totalRemainingToPay <= 0) {
+            throw new IllegalArgumentException("该贷款已还清，无需重复还款");
+        }
+
+        // 在内存中按到期日期依次冲抵，只收集发生变化的计划
+        double remainingAmount = amount;
+        List<RepaymentPlan> changedPlans = new ArrayList<>();
+        for (RepaymentPlan plan : repaymentPlans) {
+            if (remainingAmount <= 0) {
+                break;
+            }
+            if (plan.getRemainingAmount() <= 0) {
+                continue;
+            }
+            if (plan.getRemainingAmount() <= remainingAmount) {
+                // 当前分期可以完全还清
+                remainingAmount -= plan.getRemainingAmount();
+                plan.setRemainingAmount(0f);
+                // 使用符合新规范的状态值，已还款对应状态码5
+                plan.setStatus("已还款");
+            } else {
+                // 当前分期部分还款
+                plan.setRemainingAmount(plan.getRemainingAmount() - remainingAmount);
+                remainingAmount = 0;
+            }
+            changedPlans.add(plan);
+        }
+        repaymentPlanRepository.saveAll(changedPlans);
+
+        // 根据内存中的计划计算剩余金额和逾期情况，无需再次查询
+        Date now = new Date();
+        double planRemaining = 0;
+        boolean isOverdue = false;
+        for (RepaymentPlan plan : repaymentPlans) {
+            planRemaining += plan.getRemainingAmount();
+            if (plan.getRemainingAmount() > 0 && plan.getDueDate().before(now)) {
+                isOverdue = true;
+            }
+        }
+        boolean paidOff = planRemaining <= 0;
+
+        // 更新贷款申请状态：5已还款，6已逾期，4未还清
+        loanApplication.setStatus(paidOff ? 5 : (isOverdue ? 6 : 4));
+        loanApplicationRepository.save(loanApplication);
+
+        // 创建还款记录，还款金额大于实际需要还款金额时按实际需要还款金额记录
+        RepaymentRecord record = new RepaymentRecord();
+        record.setApplicationId(applicationId);
+        record.setUserId(loanApplication.getUserId());
+        record.setAmount(amount > totalRemainingToPay ? (float) totalRemainingToPay : amount);
+        record.setPayDate(payDate);
+        record.setStatus(paidOff ? "已还款" : (isOverdue ? "已逾期" : "未还清"));
+        repaymentRecordRepository.save(record);
+
+        return (float) planRemaining;
+    }
+}
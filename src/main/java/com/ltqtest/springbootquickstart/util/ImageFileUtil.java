@@ -0,0 +1,70 @@
+package com.ltqtest.springbootquickstart.util;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.http.ResponseEntity;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 图片文件响应工具类
+ * 按文件名访问的上传图片文件名都带有UUID，内容不会改变，因此可以长期缓存；
+ * 按用户ID访问的头像地址不变而内容会随更换头像改变，只能每次携带ETag重新校验
+ */
+public class ImageFileUtil {
+
+    // 图片缓存时间（天）
+    private static final long IMAGE_MAX_AGE_DAYS = 365;
+
+    private ImageFileUtil() {
+    }
+
+    /**
+     * 长期缓存的Cache-Control
+     * @return CacheControl
+     */
+    public static CacheControl immutableCacheControl() {
+        return CacheControl.maxAge(IMAGE_MAX_AGE_DAYS, TimeUnit.DAYS).cachePublic().immutable();
+    }
+
+    /**
+     * 每次使用前都需重新校验的Cache-Control
+     * @return CacheControl
+     */
+    public static CacheControl revalidateCacheControl() {
+        return CacheControl.noCache();
+    }
+
+    /**
+     * 构建图片文件的流式响应
+     * 文件以Resource形式返回，由Spring分块写出而不整体读入内存；
+     * 设置了ETag和Last-Modified，带If-None-Match/If-Modified-Since的请求会直接返回304，
+     * 带Range头的请求会返回206部分内容
+     * @param imageFile 图片文件
+     * @param defaultMediaType 无法根据扩展名识别类型时使用的Content-Type
+     * @param cacheControl 缓存策略，地址对应内容固定时用immutableCacheControl，否则用revalidateCacheControl
+     * @return 图片响应
+     */
+    public static ResponseEntity<Resource> buildImageResponse(File imageFile, MediaType defaultMediaType,
+                                                              CacheControl cacheControl) {
+        long lastModified = imageFile.lastModified();
+        long length = imageFile.length();
+        // 包含文件名，同一地址换成修改时间和大小恰好相同的另一个文件时ETag也会变化
+        String eTag = "\"" + Integer.toHexString(imageFile.getName().hashCode()) + "-"
+                + Long.toHexString(lastModified) + "-" + Long.toHexString(length) + "\"";
+
+        Resource resource = new FileSystemResource(imageFile);
+        MediaType mediaType = MediaTypeFactory.getMediaType(resource).orElse(defaultMediaType);
+
+        return ResponseEntity.ok()
+                .contentType(mediaType)
+                .eTag(eTag)
+                .lastModified(lastModified)
+                .cacheControl(cacheControl)
+                .body(resource);
+    }
+}
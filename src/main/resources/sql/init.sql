@@ -4,6 +4,7 @@ DROP TABLE IF EXISTS `product_comment`;
 DROP TABLE IF EXISTS `repayment_record`;
 DROP TABLE IF EXISTS `repayment_plan`;
 DROP TABLE IF EXISTS `approval_record`;
+DROP TABLE IF EXISTS `loan_document`;
 DROP TABLE IF EXISTS `user_address`;
 DROP TABLE IF EXISTS `product`;
 DROP TABLE IF EXISTS `loan_application`;
@@ -42,7 +43,8 @@ CREATE TABLE `buy_request` (
                                `content` varchar(10000) NOT NULL COMMENT '求购说明内容',
                                `contact` varchar(100) DEFAULT NULL COMMENT '联系方式',
                                `create_time` datetime DEFAULT NULL COMMENT '创建时间',
-                               PRIMARY KEY (`buy_request_id`)
+                               PRIMARY KEY (`buy_request_id`),
+                               KEY `idx_create_time_id` (`create_time`,`buy_request_id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='求购需求表';
 
 CREATE TABLE `experts` (
@@ -130,6 +132,7 @@ CREATE TABLE `expert_appointment` (
                                       PRIMARY KEY (`expert_appointment_id`),
                                       KEY `fk_appointment_expert` (`expert_id`),
                                       KEY `fk_appointment_user` (`user_id`),
+                                      KEY `idx_expert_date_status` (`expert_id`,`date`,`status`),
                                       CONSTRAINT `fk_appointment_expert` FOREIGN KEY (`expert_id`) REFERENCES `experts` (`expertId`),
                                       CONSTRAINT `fk_appointment_user` FOREIGN KEY (`user_id`) REFERENCES `tb_user` (`user_id`)
 ) ENGINE=InnoDB AUTO_INCREMENT=7 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='专家预约记录表';
@@ -143,9 +146,11 @@ CREATE TABLE `expert_user_chat_record` (
                                            `type` enum('text','image','file') DEFAULT 'text' COMMENT '消息类型',
                                            `is_read` tinyint(1) DEFAULT '0' COMMENT '是否已读（0未读，1已读）',
                                            `timestamp` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '发送时间',
+                                           `ai_generated` tinyint(1) DEFAULT '0' COMMENT '回答是否由AI自动生成（0否，1是）',
                                            PRIMARY KEY (`id`),
                                            KEY `fk_expert` (`expert_id`),
                                            KEY `fk_user` (`user_id`),
+                                           KEY `idx_expert_user_id` (`expert_id`,`user_id`,`id`),
                                            CONSTRAINT `fk_expert` FOREIGN KEY (`expert_id`) REFERENCES `experts` (`expertId`),
                                            CONSTRAINT `fk_user` FOREIGN KEY (`user_id`) REFERENCES `tb_user` (`user_id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='专家与用户的聊天记录';
@@ -159,13 +164,31 @@ CREATE TABLE `loan_application` (
                                     `documents` varchar(1000) DEFAULT NULL COMMENT '文件信息',
                                     `status` int NOT NULL DEFAULT '1' COMMENT '申请状态',
                                     `applyTime` datetime NOT NULL COMMENT '申请时间',
+                                    `claimedBy` int DEFAULT NULL COMMENT '领取该申请的审批人ID',
+                                    `claimExpireTime` datetime DEFAULT NULL COMMENT '领取到期时间',
                                     PRIMARY KEY (`applicationId`),
                                     KEY `idx_userId` (`userId`),
                                     KEY `idx_productId` (`fpId`),
+                                    KEY `idx_status_applyTime` (`status`,`applyTime`) COMMENT '审批队列按状态和申请时间分页',
                                     CONSTRAINT `fk_loan_application_productId` FOREIGN KEY (`fpId`) REFERENCES `financial_product` (`fpId`) ON DELETE CASCADE ON UPDATE CASCADE,
                                     CONSTRAINT `fk_loan_application_userId` FOREIGN KEY (`userId`) REFERENCES `tb_user` (`user_id`) ON DELETE CASCADE ON UPDATE CASCADE
 ) ENGINE=InnoDB AUTO_INCREMENT=29 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='贷款申请表';
 
+CREATE TABLE `loan_document` (
+                                 `documentId` int NOT NULL AUTO_INCREMENT COMMENT '材料ID',
+                                 `applicationId` int NOT NULL COMMENT '贷款申请ID',
+                                 `userId` int NOT NULL COMMENT '上传用户ID',
+                                 `sha256` char(64) NOT NULL COMMENT '文件内容SHA-256（存储文件名）',
+                                 `originalName` varchar(255) DEFAULT NULL COMMENT '原始文件名',
+                                 `contentType` varchar(100) NOT NULL COMMENT '文件类型',
+                                 `size` bigint NOT NULL COMMENT '文件大小（字节）',
+                                 `uploadTime` datetime NOT NULL COMMENT '上传时间',
+                                 PRIMARY KEY (`documentId`),
+                                 UNIQUE KEY `uk_application_sha256` (`applicationId`,`sha256`),
+                                 KEY `idx_sha256` (`sha256`),
+                                 CONSTRAINT `fk_loan_document_application` FOREIGN KEY (`applicationId`) REFERENCES `loan_application` (`applicationId`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='贷款申请材料表';
+
 CREATE TABLE `product` (
                            `product_id` int NOT NULL AUTO_INCREMENT COMMENT '商品id',
                            `product_name` varchar(255) NOT NULL COMMENT '商品名称',
@@ -179,6 +202,8 @@ CREATE TABLE `product` (
                            `status` int DEFAULT '1' COMMENT '1为已上架 2位已下架 3为缺货',
                            PRIMARY KEY (`product_id`),
                            KEY `product_tb_user_user_id_fk` (`user_id`),
+                           KEY `idx_product_status_sales` (`status`,`salesVolume`,`product_id`) COMMENT '买家端商品列表按销量游标分页',
+                           KEY `idx_product_status` (`status`) COMMENT '买家端商品列表按最新上架游标分页',
                            CONSTRAINT `product_tb_user_user_id_fk` FOREIGN KEY (`user_id`) REFERENCES `tb_user` (`user_id`)
 ) ENGINE=InnoDB AUTO_INCREMENT=19 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='商品表';
 
@@ -215,6 +240,7 @@ CREATE TABLE `repayment_plan` (
                                   `updated_at` timestamp NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
                                   PRIMARY KEY (`planId`),
                                   UNIQUE KEY `idx_application_installment` (`applicationId`),
+                                  KEY `idx_status_due_date` (`status`,`due_date`) COMMENT '逾期扫描只按到期日期分批查询未还的计划',
                                   CONSTRAINT `repayment_plan_ibfk_1` FOREIGN KEY (`applicationId`) REFERENCES `loan_application` (`applicationId`) ON DELETE CASCADE
 ) ENGINE=InnoDB AUTO_INCREMENT=15 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='还款计划表';
 
@@ -244,6 +270,8 @@ CREATE TABLE `product_comment` (
                                    PRIMARY KEY (`product_comment_id`),
                                    KEY `product_id` (`product_id`),
                                    KEY `user_id` (`user_id`),
+                                   KEY `idx_root_comment_id` (`root_comment_id`),
+                                   KEY `idx_product_root_time` (`product_id`,`root_comment_id`,`send_time`),
                                    CONSTRAINT `product_comment_ibfk_1` FOREIGN KEY (`product_id`) REFERENCES `product` (`product_id`) ON DELETE CASCADE,
                                    CONSTRAINT `product_comment_ibfk_2` FOREIGN KEY (`user_id`) REFERENCES `tb_user` (`user_id`) ON DELETE CASCADE
 ) ENGINE=InnoDB AUTO_INCREMENT=16 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='商品评论表';
@@ -255,11 +283,11 @@ CREATE TABLE `purchase` (
                             `amount` int NOT NULL COMMENT '商品数量',
                             `total_price` double NOT NULL COMMENT '商品金额',
                             `get_address` varchar(200) DEFAULT NULL COMMENT '收货地址',
-                            `status` int DEFAULT '1' COMMENT '状态（农产品商品有7个状态：1.刚上架状态 2上架后被消费者置入购物车，待支付 3.消费者付款，待发货阶段 4.农户发货阶段 5消费者已收货 6.该订单被取消（买家取消或卖家取消）7.已退货（每一个商品加一个退货字段，是否支持退货））',
+                            `status` int DEFAULT '1' COMMENT '状态（农产品商品有7个状态：1.刚上架状态 2上架后被消费者置入购物车，待支付 3.消费者付款，待发货阶段 4.农户发货阶段 5消费者已收货 6.该订单被取消（买家取消或卖家取消）7.已退货（每一个商品加一个退货字段，是否支持退货） 8.已付款但库存不足，待退款或人工处理）',
                             `create_time` datetime DEFAULT NULL COMMENT '创建时间',
                             `update_time` datetime DEFAULT NULL COMMENT '更新时间',
                             PRIMARY KEY (`purchase_id`),
-                            KEY `product_id` (`product_id`),
+                            KEY `idx_purchase_product_status_time` (`product_id`,`status`,`create_time`) COMMENT '农户销售记录按商品、状态、时间查询',
                             KEY `user_id` (`user_id`),
                             CONSTRAINT `purchase_ibfk_1` FOREIGN KEY (`product_id`) REFERENCES `product` (`product_id`) ON DELETE CASCADE ON UPDATE CASCADE,
                             CONSTRAINT `purchase_ibfk_2` FOREIGN KEY (`user_id`) REFERENCES `tb_user` (`user_id`) ON DELETE CASCADE ON UPDATE CASCADE
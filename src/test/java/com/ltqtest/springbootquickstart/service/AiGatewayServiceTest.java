@@ -0,0 +1,183 @@
+package com.ltqtest.springbootquickstart.service;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * AI网关测试，使用MockWebServer模拟DeepSeek接口
+ */
+class AiGatewayServiceTest {
+
+    private MockWebServer server;
+    private AiGatewayService gateway;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        gateway = newGateway("test-key");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        gateway.shutdown();
+        server.shutdown();
+    }
+
+    @Test
+    void askReturnsResponseBody() throws Exception {
+        String body = gateway.wrapAnswer("多施有机肥");
+        server.enqueue(new MockResponse().setHeader("Content-Type", "application/json").setBody(body));
+
+        String answer = gateway.ask("土壤板结怎么办").get(5, TimeUnit.SECONDS);
+
+        assertEquals(body, answer);
+        assertEquals("多施有机肥", gateway.extractAnswer(answer));
+        RecordedRequest request = server.takeRequest(5, TimeUnit.SECONDS);
+        assertEquals("Bearer test-key", request.getHeader("Authorization"));
+        assertEquals("application/json", request.getHeader("Accept"));
+        String sent = request.getBody().readUtf8();
+        assertTrue(sent.contains("土壤板结怎么办"));
+        assertFalse(sent.contains("\"stream\""));
+    }
+
+    @Test
+    void askFailsOnErrorStatus() {
+        server.enqueue(new MockResponse().setResponseCode(500));
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> gateway.ask("问题").get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, e.getCause());
+    }
+
+    @Test
+    void askFailsWhenDisabled() {
+        AiGatewayService disabled = newGateway("");
+        try {
+            assertFalse(disabled.isEnabled());
+            CompletableFuture<String> future = disabled.ask("问题");
+            ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(AiGatewayService.DisabledException.class, e.getCause());
+            assertEquals(0, server.getRequestCount());
+        } finally {
+            disabled.shutdown();
+        }
+    }
+
+    @Test
+    void streamSendsTokensAndDone() throws Exception {
+        server.enqueue(new MockResponse()
+                .setHeader("Content-Type", "text/event-stream")
+                .setBody("data: {\"choices\":[{\"delta\":{\"role\":\"assistant\"}}]}\n\n"
+                        + "data: {\"choices\":[{\"delta\":{\"content\":\"多施\"}}]}\n\n"
+                        + ": keep-alive\n\n"
+                        + "data: {\"choices\":[{\"delta\":{\"content\":\"有机肥\"}}]}\n\n"
+                        + "data: [DONE]\n\n"));
+        RecordingEmitter emitter = new RecordingEmitter();
+        AtomicReference<String> stored = new AtomicReference<>();
+
+        gateway.stream("土壤板结怎么办", emitter, stored::set);
+
+        assertTrue(emitter.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("token:多施", "token:有机肥", "done:多施有机肥"), emitter.events);
+        assertEquals("多施有机肥", stored.get());
+        RecordedRequest request = server.takeRequest(5, TimeUnit.SECONDS);
+        assertEquals("text/event-stream", request.getHeader("Accept"));
+        assertTrue(request.getBody().readUtf8().contains("\"stream\":true"));
+    }
+
+    @Test
+    void streamSendsErrorOnErrorStatus() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        RecordingEmitter emitter = new RecordingEmitter();
+        AtomicReference<String> stored = new AtomicReference<>();
+
+        gateway.stream("问题", emitter, stored::set);
+
+        assertTrue(emitter.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("error:AI服务返回错误，状态码503"), emitter.events);
+        assertNull(stored.get());
+    }
+
+    @Test
+    void streamRejectedWhenDisabled() {
+        AiGatewayService disabled = newGateway(null);
+        try {
+            assertThrows(AiGatewayService.DisabledException.class,
+                    () -> disabled.stream("问题", new RecordingEmitter(), null));
+            assertEquals(0, server.getRequestCount());
+        } finally {
+            disabled.shutdown();
+        }
+    }
+
+    private AiGatewayService newGateway(String apiKey) {
+        return new AiGatewayService(server.url("/v1/chat/completions").toString(), apiKey, "deepseek-chat",
+                1000, 5000, 10000, 10000, 4, 2, 30);
+    }
+
+    /**
+     * 记录发送事件的SseEmitter，事件记为"名称:数据"
+     */
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final List<String> events = new ArrayList<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        @Override
+        public synchronized void send(SseEventBuilder builder) {
+            // 不同Spring版本拆分事件的方式不同，拼接全部内容后按SSE文本格式解析
+            StringBuilder text = new StringBuilder();
+            for (ResponseBodyEmitter.DataWithMediaType item : builder.build()) {
+                text.append(item.getData());
+            }
+            String name = null;
+            StringBuilder data = new StringBuilder();
+            for (String line : text.toString().split("\n")) {
+                if (line.startsWith("event:")) {
+                    name = line.substring(6);
+                } else if (line.startsWith("data:")) {
+                    if (data.length() > 0) {
+                        data.append('\n');
+                    }
+                    data.append(line.substring(5));
+                }
+            }
+            events.add(name + ":" + data);
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed.countDown();
+        }
+
+        @Override
+        public synchronized void completeWithError(Throwable ex) {
+            events.add("failed:" + ex.getMessage());
+            completed.countDown();
+        }
+    }
+}